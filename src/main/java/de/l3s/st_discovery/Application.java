@@ -1,22 +1,27 @@
 package de.l3s.st_discovery;
 
+import de.l3s.st_discovery.graph.CompactGraph;
 import de.l3s.st_discovery.graph.GraphFetcher;
+import de.l3s.st_discovery.graph.OutlierStore;
 import de.l3s.st_discovery.graph.Subgraph;
 import de.l3s.st_discovery.model.DependencyCalculator;
 import de.l3s.st_discovery.model.OutlierIdentifier;
-import de.l3s.st_discovery.model.regiongrowing.LabeledDefaultEdge;
+import de.l3s.st_discovery.model.StreamingOutlierIdentifier;
+import de.l3s.st_discovery.model.outlier.HistoryOutlierIdentifier;
 import de.l3s.st_discovery.model.regiongrowing.RegionGrowing;
 import de.l3s.st_discovery.model.SpatialMerging;
-import de.l3s.st_discovery.model.regiongrowing.Segment;
 import de.l3s.st_discovery.output.DependencyRecord;
 import de.l3s.st_discovery.output.DependencyRecordWriter;
 import de.l3s.st_discovery.output.SubgraphWriter;
+import de.l3s.st_discovery.source.DataSources;
+import de.l3s.st_discovery.source.GraphSource;
 import de.l3s.st_discovery.util.configuration.Configuration;
 import de.l3s.st_discovery.util.configuration.ConfigurationParser;
 import de.l3s.st_discovery.util.db.PostgreDB;
+import de.l3s.st_discovery.util.misc.ArtifactCache;
 
-import org.jgrapht.Graph;
-
+import java.io.File;
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
 import java.util.Date;
@@ -25,6 +30,13 @@ public class Application {
 
     private List<Configuration> configs;
 
+    //results of stages shared by all configurations of this run
+    private ArtifactCache artifacts = new ArtifactCache();
+    //inputs of the last outlier identification per outlier table
+    private Map<String, List<Object>> outlierTableInputs = new HashMap<>();
+    //configuration ids of runs on the file data source
+    private int fileConfigCount = 0;
+
     public Application(String[] args) {
         configs = parseConfig(args);
 
@@ -35,7 +47,10 @@ public class Application {
         ConfigurationParser confParse = new ConfigurationParser();
 
         PostgreDB.addConfigEntriesWitMaxCons(confParse);
+        DataSources.registerConfigEntries(confParse);
         OutlierIdentifier.registerConfigEntries(confParse);
+        StreamingOutlierIdentifier.registerConfigEntries(confParse);
+        HistoryOutlierIdentifier.registerConfigEntries(confParse);
         GraphFetcher.registerConfigEntries(confParse);
         RegionGrowing.registerConfigEntries(confParse);
         SpatialMerging.registerConfigEntries(confParse);
@@ -44,33 +59,94 @@ public class Application {
         confParse.addBooleanOption("oi", "outlierIdentification", "If provided outlier will be computed");
 
         confParse.parse(args);
-        return confParse.getConfigs();
+        List<Configuration> configs = confParse.getConfigs();
+        //a merge hierarchy built for the smallest threshold serves all configurations
+        double minThSim = Double.POSITIVE_INFINITY;
+        for (Configuration c : configs) {
+            minThSim = Math.min(minThSim, c.getDoubleOption("thSim"));
+        }
+        for (Configuration c : configs) {
+            c.setVariable("minThSim", minThSim);
+        }
+        return configs;
     }
 
-    private void run() throws SQLException {
+    private void run() throws SQLException, IOException {
         for (Configuration c: configs) {
             runConfig(c);
         }
     }
 
-    private void runConfig(Configuration config) throws SQLException {
-        determineConfigID(config);
+    private void runConfig(Configuration config) throws SQLException, IOException {
+        boolean fileBased = DataSources.isFileBased(config);
+        if (fileBased) {
+            config.setVariable("id", ++fileConfigCount);
+        } else {
+            determineConfigID(config);
+        }
 
         //outlier identification
+        String outlierTable = config.getStringOption("outlierTable");
+        //typed values with the defaults of the consumers, so an unset option matches its default
+        String outlierDetector = config.getStringOption("outlierDetector", "tukey");
+        List<Object> identificationInputs = Arrays.asList(config.getStringOption("dataSource", "postgres"),
+                DataSources.getDataDirectory(config).getPath(),
+                config.getStringOption("inputTable"),
+                config.getStringOption("idColumn"),
+                config.getStringOption("speedColumn"),
+                config.getStringOption("timeColumn"),
+                config.getStringOption("outlierEngine", "sql"),
+                outlierDetector,
+                config.getDoubleOption("outlierThreshold", HistoryOutlierIdentifier.defaultThreshold(outlierDetector)),
+                config.getIntOption("sketchSize", 200),
+                config.getBooleanOption("incrementalOutliers", false));
         boolean doOutlierIdentification = config.getBooleanOption("outlierIdentification", false);
-        if (doOutlierIdentification) {
+        if (doOutlierIdentification && !identificationInputs.equals(outlierTableInputs.get(outlierTable))) {
             OutlierIdentifier oi = new OutlierIdentifier(config);
-            oi.run();
+            oi.run(artifacts);
+            outlierTableInputs.put(outlierTable, identificationInputs);
         }
 
-        //fetch street network data from db
-        GraphFetcher gf = new GraphFetcher(config);
-        Graph<Integer, LabeledDefaultEdge> graph = gf.fetchGraph();
-        SortedMap<Date, Set<Segment>> outliers = gf.fetchOutlierMap();
+        //fetch street network data
+        GraphSource gs = DataSources.createGraphSource(config);
+        List<Object> graphKey = Arrays.asList(config.getStringOption("dataSource", "postgres"),
+                DataSources.getDataDirectory(config).getPath(),
+                config.getStringOption("graphTable"),
+                config.getStringOption("subgraphTable"),
+                config.getStringOption("subgraphName"));
+        CompactGraph graph = artifacts.get("street network", graphKey, gs::fetchGraph);
+
+        List<Object> outlierKey = new ArrayList<>(graphKey);
+        outlierKey.add(outlierTable);
+        outlierKey.add(outlierTableInputs.get(outlierTable));
+        OutlierStore outliers = artifacts.get("outliers", outlierKey, () -> gs.fetchOutliers(graph));
 
         //identifaction of affected subgraphs
-        RegionGrowing rg  = new RegionGrowing(config, graph, outliers, gf.getEdgesMap(), gf.getMaxNodeId());
-        Map<Date, List<Subgraph>> rgGraphs = rg.run();
+        RegionGrowing rg  = new RegionGrowing(config, graph, outliers);
+        int dskip = config.getIntOption("dSkip", 2);
+        int[] dskipLevels = rg.getDSkipLevels();
+        List<Object> neighborhoodKey = new ArrayList<>(graphKey);
+        neighborhoodKey.add(dskipLevels[dskipLevels.length - 1]);
+        rg.setNeighborhoods(artifacts.get("edge count neighborhoods", neighborhoodKey, rg::getNeighborhoods));
+
+        Map<Date, List<Subgraph>> regions;
+        if (dskipLevels.length > 1) {
+            //configurations sweeping dSkip over the same levels share one pass
+            List<Object> levelKey = new ArrayList<>(outlierKey);
+            levelKey.add(Arrays.toString(dskipLevels));
+            levelKey.add(config.getIntOption("temporalGap", 0));
+            regions = artifacts.get("nested regions", levelKey, rg::runLevels).get(dskip);
+        } else {
+            List<Object> regionKey = new ArrayList<>(outlierKey);
+            regionKey.add(dskip);
+            regionKey.add(config.getIntOption("temporalGap", 0));
+            regionKey.add(config.getBooleanOption("writeRegions", false));
+            regionKey.add(config.getStringOption("regionTableName", "region_growing"));
+            regionKey.add(config.getBooleanOption("incrementalRegions", false));
+            regions = artifacts.get("regions", regionKey, rg::run);
+        }
+        //merging modifies the subgraphs, so every configuration works on copies
+        Map<Date, List<Subgraph>> rgGraphs = copyRegions(regions);
 
         //spatial merging
         SpatialMerging spm = new SpatialMerging(config);
@@ -78,30 +154,90 @@ public class Application {
 
         //write subgraphs
         SubgraphWriter subgraphWriter = new SubgraphWriter(config);
-        subgraphWriter.writeSubgraphsToDB(spmGraphs);
+        File dataDirectory = DataSources.getDataDirectory(config);
+        int configID = config.getIntVariable("id");
+        if (fileBased) {
+            subgraphWriter.writeSubgraphsToFile(spmGraphs, new File(dataDirectory, "subgraphs_" + configID + ".tsv"));
+        } else {
+            subgraphWriter.writeSubgraphsToDB(spmGraphs);
+        }
 
         //strucutural dependencies
         DependencyCalculator dependencyCalculator = new DependencyCalculator(config);
-        List<DependencyRecord> result = dependencyCalculator.run(spmGraphs);
+        List<DependencyRecord> result = dependencyCalculator.run(spmGraphs, outliers);
 
         //writeResult
         DependencyRecordWriter dependencyRecordWriter = new DependencyRecordWriter(config);
-        dependencyRecordWriter.writeToDB(result);
+        if (fileBased) {
+            dependencyRecordWriter.writeToFile(result, new File(dataDirectory, "dependencies_" + configID + ".tsv"));
+        } else {
+            dependencyRecordWriter.writeToDB(result);
+        }
 
     }
 
+    private static Map<Date, List<Subgraph>> copyRegions(Map<Date, List<Subgraph>> regions) {
+        Map<Date, List<Subgraph>> result = new HashMap<>();
+        for (Map.Entry<Date, List<Subgraph>> entry : regions.entrySet()) {
+            List<Subgraph> copies = new ArrayList<>(entry.getValue().size());
+            for (Subgraph sg : entry.getValue()) {
+                copies.add(sg.copy());
+            }
+            result.put(entry.getKey(), copies);
+        }
+        return result;
+    }
+
+    /**
+     * Columns added to the config table after its first version, with the behaviour of that version as default.
+     * Every option that changes the stored results has a column, otherwise configurations differing only in
+     * that option would share an id and overwrite each other's subgraphs and dependencies.
+     */
+    private static final String[][] ADDED_CONFIG_COLUMNS = {
+            {"outlier_engine", "text", "'sql'"},
+            {"outlier_detector", "text", "'tukey'"},
+            {"outlier_threshold", "double precision", "1.5"},
+            {"temporal_gap", "int", "0"},
+            {"d_skip_levels", "text", "''"},
+            {"lsh_candidates", "boolean", "false"},
+            {"min_hash_size", "int", "128"},
+            {"merge_dendrogram", "text", "''"},
+            {"distance_engine", "text", "'sql'"}
+    };
+    private static final String CONFIG_KEY = "config_options_key";
+
+    /**
+     * Returns the values of the config table columns of a configuration, unset options take their default value
+     */
+    static LinkedHashMap<String, Object> configColumns(Configuration config) {
+        String outlierDetector = config.getStringOption("outlierDetector", "tukey");
+        LinkedHashMap<String, Object> columns = new LinkedHashMap<>();
+        columns.put("input_table", config.getStringOption("inputTable"));
+        columns.put("outlier_table", config.getStringOption("outlierTable"));
+        columns.put("idColumn", config.getStringOption("idColumn"));
+        columns.put("speedColumn", config.getStringOption("speedColumn"));
+        columns.put("graphTable", config.getStringOption("graphTable"));
+        columns.put("subgraphTable", config.getStringOption("subgraphTable"));
+        columns.put("subgraphName", config.getStringOption("subgraphName"));
+        columns.put("th_sim", config.getDoubleOption("thSim"));
+        columns.put("th_dmin", config.getDoubleOption("thdmin"));
+        columns.put("d_skip", config.getIntOption("dSkip", 2));
+        columns.put("outlier_engine", config.getStringOption("outlierEngine", "sql"));
+        columns.put("outlier_detector", outlierDetector);
+        columns.put("outlier_threshold", config.getDoubleOption("outlierThreshold",
+                HistoryOutlierIdentifier.defaultThreshold(outlierDetector)));
+        columns.put("temporal_gap", config.getIntOption("temporalGap", 0));
+        columns.put("d_skip_levels", config.getStringOption("dSkipLevels", ""));
+        columns.put("lsh_candidates", config.getBooleanOption("lshCandidates", false));
+        columns.put("min_hash_size", config.getIntOption("minHashSize", 128));
+        columns.put("merge_dendrogram", config.getStringOption("mergeDendrogram", ""));
+        columns.put("distance_engine", config.getStringOption("distanceEngine", "jvm"));
+        return columns;
+    }
+
     private void determineConfigID(Configuration config) {
-        String inputTable = config.getStringOption("inputTable");
-        String outlierTable = config.getStringOption("outlierTable");
-        String idColumn = config.getStringOption("idColumn");
-        String speedColumn =  config.getStringOption("speedColumn");
-        String timeColumn  = config.getStringOption("timeColumn");
-        String graphTable = config.getStringOption("graphTable");
-        String subgraphTable = config.getStringOption("subgraphTable");
-        String subgraphName = config.getStringOption("subgraphName");
-        double thSim = config.getDoubleOption("thSim");
-        double thdmin = config.getDoubleOption("thdmin");
-        int dskip = config.getIntOption("dSkip", 2);
+        LinkedHashMap<String, Object> columns = configColumns(config);
+        String names = String.join(", ", columns.keySet());
 
         String createQuery = "create table if not exists config(\n" +
                 "    id serial primary key,\n" +
@@ -114,61 +250,59 @@ public class Application {
                 "    subgraphName text,\n" +
                 "    th_sim double precision,\n" +
                 "    th_dmin double precision,\n" +
-                "    d_skip int,\n" +
-                "    unique (input_table, outlier_table, idColumn, speedColumn," +
-                " graphTable, subgraphTable, subgraphName, th_sim, th_dmin, d_skip)\n" +
+                "    d_skip int\n" +
                 ")";
 
-        String selectQuery = "select id from config where (" +
-                "input_table='"+inputTable+"' " +
-                "and outlier_table='"+outlierTable+"' " +
-                "and idColumn='"+idColumn+"' " +
-                "and speedColumn='"+speedColumn+"' " +
-                "and graphTable='"+graphTable+"' " +
-                "and subgraphTable='"+subgraphTable+"' " +
-                "and subgraphName='"+subgraphName+"' " +
-                "and th_sim="+thSim+" " +
-                "and th_dmin="+thdmin+" " +
-                "and d_skip="+dskip+") ";
-
-        String insertQuery = "insert into config (input_table, " +
-                "outlier_table," +
-                "idColumn, " +
-                "speedColumn, " +
-                "graphTable, " +
-                "subgraphTable, " +
-                "subgraphName, " +
-                "th_sim, " +
-                "th_dmin, " +
-                "d_skip) VALUES ("
-                +"'"+inputTable+"', "
-                +"'"+outlierTable+"', "
-                +"'"+idColumn+"', "
-                +"'"+speedColumn+"', "
-                +"'"+graphTable+"', "
-                +"'"+subgraphTable+"', "
-                +"'"+subgraphName+"', "
-                +thSim+", "
-                +thdmin+", "
-                +dskip+") RETURNING id";
+        String selectQuery = "select id from config where " +
+                String.join(" is not distinct from ? and ", columns.keySet()) + " is not distinct from ?";
+
+        String insertQuery = "insert into config (" + names + ") VALUES (" +
+                String.join(", ", Collections.nCopies(columns.size(), "?")) + ") RETURNING id";
 
         PostgreDB db = new PostgreDB(config);
         try (Connection con = db.getConnection();
              Statement createStmt = con.createStatement();
-             Statement selectStmt = con.createStatement();
-             Statement insrtStmt = con.createStatement()) {
+             PreparedStatement selectStmt = con.prepareStatement(selectQuery);
+             PreparedStatement insrtStmt = con.prepareStatement(insertQuery)) {
 
             createStmt.execute(createQuery);
+            for (String[] column : ADDED_CONFIG_COLUMNS) {
+                createStmt.execute("alter table config add column if not exists " + column[0] + " " + column[1] +
+                        " not null default " + column[2]);
+            }
+            //the unique constraint of the first version does not cover the added columns
+            List<String> constraints = new ArrayList<>();
+            try (ResultSet rs = createStmt.executeQuery("select conname from pg_constraint " +
+                    "where conrelid = 'config'::regclass and contype = 'u'")) {
+                while (rs.next()) {
+                    constraints.add(rs.getString(1));
+                }
+            }
+            for (String constraint : constraints) {
+                if (!constraint.equals(CONFIG_KEY)) {
+                    createStmt.execute("alter table config drop constraint " + constraint);
+                }
+            }
+            if (!constraints.contains(CONFIG_KEY)) {
+                createStmt.execute("alter table config add constraint " + CONFIG_KEY + " unique (" + names + ")");
+            }
+
+            int i = 0;
+            for (Object value : columns.values()) {
+                ++i;
+                selectStmt.setObject(i, value);
+                insrtStmt.setObject(i, value);
+            }
 
             int configID = -1;
-            try (ResultSet rs = selectStmt.executeQuery(selectQuery)) {
+            try (ResultSet rs = selectStmt.executeQuery()) {
                 while (rs.next()) {
                     configID = rs.getInt(1);
                 }
             }
 
             if (configID == -1) {
-                try (ResultSet rs = insrtStmt.executeQuery(insertQuery)) {
+                try (ResultSet rs = insrtStmt.executeQuery()) {
                     while (rs.next()) {
                         configID = rs.getInt(1);
                     }
@@ -184,7 +318,7 @@ public class Application {
     }
 
 
-    public static void main(String[] args) throws SQLException {
+    public static void main(String[] args) throws SQLException, IOException {
         Application app = new Application(args);
         app.run();
     }
@@ -0,0 +1,214 @@
+package de.l3s.st_discovery.graph;
+
+import de.l3s.st_discovery.model.regiongrowing.LabeledDefaultEdge;
+import de.l3s.st_discovery.model.regiongrowing.Segment;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultDirectedGraph;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable street graph in compressed sparse row layout.
+ *
+ * Vertices and edges are remapped to dense indices: vertex i is the i-th smallest node id, edges are ordered
+ * by (source, target) so that the outgoing edges of vertex v are the edge indices offsets[v]..offsets[v+1]-1.
+ * The jgrapht graph the compact graph was built from is kept as adapter for code that still needs it.
+ */
+public class CompactGraph {
+
+    private final int[] nodeIds;
+    private final int[] offsets;
+    private final int[] edgeSources;
+    private final int[] edgeTargets;
+    private final int[] labels;
+    private final int[] sortedLabels;
+    private final int[] sortedLabelEdges;
+    private final LabeledDefaultEdge[] edges;
+    private final Graph<Integer, LabeledDefaultEdge> graph;
+
+    private CompactGraph(int[] nodeIds, int[] offsets, int[] edgeSources, int[] edgeTargets, int[] labels,
+                         LabeledDefaultEdge[] edges, Graph<Integer, LabeledDefaultEdge> graph) {
+        this.nodeIds = nodeIds;
+        this.offsets = offsets;
+        this.edgeSources = edgeSources;
+        this.edgeTargets = edgeTargets;
+        this.labels = labels;
+        this.edges = edges;
+        this.graph = graph;
+
+        //label lookup: labels sorted ascending, with the matching edge index
+        long[] labelEntries = new long[labels.length];
+        for (int e = 0; e < labels.length; ++e) {
+            labelEntries[e] = (((long) labels[e]) << 32) | e;
+        }
+        Arrays.sort(labelEntries);
+        sortedLabels = new int[labels.length];
+        sortedLabelEdges = new int[labels.length];
+        for (int i = 0; i < labelEntries.length; ++i) {
+            sortedLabels[i] = (int) (labelEntries[i] >> 32);
+            sortedLabelEdges[i] = (int) labelEntries[i];
+        }
+    }
+
+    /**
+     * Builds the street graph of a set of segments. Parallel segments are dropped, the first one is kept.
+     * @param segments Street segments with their geometries
+     * @return The compact graph
+     */
+    public static CompactGraph fromSegments(Collection<Segment> segments) {
+        Graph<Integer, LabeledDefaultEdge> g = new DefaultDirectedGraph<>(LabeledDefaultEdge.class);
+        for (Segment segment : segments) {
+            g.addVertex(segment.sourceNodeId);
+            g.addVertex(segment.targetNodeId);
+            LabeledDefaultEdge edge = g.addEdge(segment.sourceNodeId, segment.targetNodeId);
+            if(edge != null){
+                edge.label = segment.id;
+                edge.node_source = segment.sourceNodeId;
+                edge.node_sink = segment.targetNodeId;
+                edge.setGeometry(segment.geom);
+            }
+        }
+        return fromGraph(g);
+    }
+
+    /**
+     * Builds the compact representation of a jgrapht street graph and assigns the dense edge indices
+     * to {@link LabeledDefaultEdge#index}.
+     * @param graph Street graph
+     * @return The compact graph
+     */
+    public static CompactGraph fromGraph(Graph<Integer, LabeledDefaultEdge> graph) {
+        int[] nodeIds = new int[graph.vertexSet().size()];
+        int v = 0;
+        for (Integer nodeId : graph.vertexSet()) {
+            nodeIds[v++] = nodeId;
+        }
+        Arrays.sort(nodeIds);
+
+        LabeledDefaultEdge[] edges = graph.edgeSet().toArray(new LabeledDefaultEdge[0]);
+        int[] edgeSources = new int[edges.length];
+        int[] edgeTargets = new int[edges.length];
+        for (int e = 0; e < edges.length; ++e) {
+            edgeSources[e] = Arrays.binarySearch(nodeIds, edges[e].node_source);
+            edgeTargets[e] = Arrays.binarySearch(nodeIds, edges[e].node_sink);
+        }
+
+        //order edges by (source, target)
+        long[] order = new long[edges.length];
+        for (int e = 0; e < edges.length; ++e) {
+            order[e] = (((long) edgeSources[e]) << 32) | edgeTargets[e];
+        }
+        Integer[] permutation = new Integer[edges.length];
+        for (int e = 0; e < edges.length; ++e) {
+            permutation[e] = e;
+        }
+        Arrays.sort(permutation, (a, b) -> Long.compare(order[a], order[b]));
+
+        LabeledDefaultEdge[] sortedEdges = new LabeledDefaultEdge[edges.length];
+        int[] sortedSources = new int[edges.length];
+        int[] sortedTargets = new int[edges.length];
+        int[] labels = new int[edges.length];
+        int[] offsets = new int[nodeIds.length + 1];
+        for (int e = 0; e < edges.length; ++e) {
+            int old = permutation[e];
+            sortedEdges[e] = edges[old];
+            sortedSources[e] = edgeSources[old];
+            sortedTargets[e] = edgeTargets[old];
+            labels[e] = edges[old].label;
+            edges[old].index = e;
+            ++offsets[sortedSources[e] + 1];
+        }
+        for (int i = 0; i < nodeIds.length; ++i) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        return new CompactGraph(nodeIds, offsets, sortedSources, sortedTargets, labels, sortedEdges, graph);
+    }
+
+    public int getVertexCount() {
+        return nodeIds.length;
+    }
+
+    public int getEdgeCount() {
+        return labels.length;
+    }
+
+    /**
+     * Returns the dense index of a node id or -1 if the node is not part of the graph
+     */
+    public int vertexIndexOf(int nodeId) {
+        int pos = Arrays.binarySearch(nodeIds, nodeId);
+        return (pos >= 0) ? pos : -1;
+    }
+
+    public int getNodeId(int vertex) {
+        return nodeIds[vertex];
+    }
+
+    /**
+     * Returns the first outgoing edge index of vertex
+     */
+    public int outgoingStart(int vertex) {
+        return offsets[vertex];
+    }
+
+    /**
+     * Returns the index after the last outgoing edge of vertex
+     */
+    public int outgoingEnd(int vertex) {
+        return offsets[vertex + 1];
+    }
+
+    public int getEdgeSource(int edge) {
+        return edgeSources[edge];
+    }
+
+    public int getEdgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    public int getLabel(int edge) {
+        return labels[edge];
+    }
+
+    /**
+     * Returns the index of the edge with the given label (street id) or -1 if there is no such edge
+     */
+    public int edgeIndexOf(int label) {
+        int pos = Arrays.binarySearch(sortedLabels, label);
+        return (pos >= 0) ? sortedLabelEdges[pos] : -1;
+    }
+
+    public LabeledDefaultEdge getEdge(int edge) {
+        return edges[edge];
+    }
+
+    /**
+     * Returns the jgrapht graph this graph was built from
+     */
+    public Graph<Integer, LabeledDefaultEdge> asGraph() {
+        return graph;
+    }
+
+    /**
+     * Order independent fingerprint of the graph structure (node ids and labeled edges)
+     */
+    public long fingerprint() {
+        long hash = 0xCBF29CE484222325L;
+        for (int nodeId : nodeIds) {
+            hash = mix(hash, nodeId);
+        }
+        for (int e = 0; e < labels.length; ++e) {
+            hash = mix(hash, (((long) nodeIds[edgeSources[e]]) << 32) | (nodeIds[edgeTargets[e]] & 0xFFFFFFFFL));
+            hash = mix(hash, labels[e]);
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= 0x100000001B3L;
+        return hash ^ (hash >>> 29);
+    }
+}
@@ -1,158 +1,263 @@
 package de.l3s.st_discovery.graph;
 
-import de.l3s.st_discovery.model.regiongrowing.LabeledDefaultEdge;
 import de.l3s.st_discovery.model.regiongrowing.Segment;
+import de.l3s.st_discovery.source.GraphSource;
 import de.l3s.st_discovery.util.configuration.Configurable;
 import de.l3s.st_discovery.util.configuration.Configuration;
 import de.l3s.st_discovery.util.configuration.ConfigurationParser;
-import de.l3s.st_discovery.util.db.PostgreDB;
+import de.l3s.st_discovery.util.db.PartitionedLoader;
 
 import org.geotools.factory.Hints;
 import org.geotools.geometry.jts.JTSFactoryFinder;
-import org.geotools.geometry.jts.WKTReader2;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
-import org.jgrapht.Graph;
-import org.jgrapht.graph.DefaultDirectedGraph;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
 
 
-import java.sql.Connection;
-import java.sql.ResultSet;
+import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-public class GraphFetcher extends Configurable {
+public class GraphFetcher extends Configurable implements GraphSource {
 
-    private Map<Integer, LabeledDefaultEdge> edgesMap;
-    private int maxNodeId;
     private String graphTable, subgraphTable, subgraphName, outlierTable;
+    private boolean useSnapshot, refreshSnapshot;
 
 
     public static void registerConfigEntries(ConfigurationParser cp) {
         cp.addStringOption("gt", "graphTable", "table that holds the streetnetwork as graph");
         cp.addStringOption("st", "subgraphTable", "table that holds the name of the subgraph of the streetnetwork");
         cp.addStringOption("sn", "subgraphName", "name of the target subgraph");
+        cp.addBooleanOption("gs", "graphSnapshot", "Load the street network from a local snapshot file and create it if missing");
+        cp.addBooleanOption("rgs", "refreshGraphSnapshot", "Fetch the street network from the database and rewrite the snapshot");
     }
 
     public GraphFetcher(Configuration config) {
         super(config);
-        maxNodeId=0;
-        edgesMap = new HashMap<>();
 
         graphTable = config.getStringOption("graphTable");
         subgraphTable = config.getStringOption("subgraphTable");
         subgraphName = config.getStringOption("subgraphName");
         outlierTable = config.getStringOption("outlierTable");
+        useSnapshot = config.getBooleanOption("graphSnapshot", false);
+        refreshSnapshot = config.getBooleanOption("refreshGraphSnapshot", false);
     }
 
 
-    public Graph<Integer, LabeledDefaultEdge> fetchGraph() throws SQLException {
-        Collection<Segment> segments = fetchSegmentsFromDB();
-
-        Graph<Integer, LabeledDefaultEdge> g = new DefaultDirectedGraph<>(LabeledDefaultEdge.class);
-        for (Segment segment : segments) {
-            g.addVertex(segment.sourceNodeId);
-            g.addVertex(segment.targetNodeId);
-            LabeledDefaultEdge edge = g.addEdge(segment.sourceNodeId, segment.targetNodeId);
-            if(edge != null){
-                edge.label = segment.id;
-                edge.node_source = segment.sourceNodeId;
-                edge.node_sink = segment.targetNodeId;
-                edgesMap.put(segment.id, edge);
-                maxNodeId = (maxNodeId < edge.node_source) ? edge.node_source : maxNodeId;
-                maxNodeId = (maxNodeId < edge.node_sink) ? edge.node_sink : maxNodeId;
-                edge.setGeometry(segment.geom);
+    /**
+     * Fetches the street network and returns it in compact form. The jgrapht graph is available through
+     * {@link CompactGraph#asGraph()}.
+     */
+    @Override
+    public CompactGraph fetchGraph() throws SQLException {
+        GraphSnapshot snapshot = new GraphSnapshot(graphTable, subgraphTable, subgraphName);
+        File snapshotFile = snapshot.getFile();
+
+        if (useSnapshot && !refreshSnapshot && snapshotFile.exists()) {
+            try {
+                GraphSnapshot.Contents contents = snapshot.read(snapshotFile, createGeometryFactory());
+                CompactGraph graph = CompactGraph.fromSegments(contents.segments);
+                if (graph.fingerprint() == contents.fingerprint) {
+                    System.out.println("Loaded street network from " + snapshotFile);
+                    return graph;
+                }
+                Logger.getLogger(GraphFetcher.class.getName()).log(Level.WARNING,
+                        "Ignoring inconsistent graph snapshot " + snapshotFile);
+            } catch (IOException e) {
+                Logger.getLogger(GraphFetcher.class.getName()).log(Level.WARNING,
+                        "Ignoring graph snapshot: " + e.getMessage());
             }
         }
-        return g;
-    }
-
-    private Collection<Segment> fetchSegmentsFromDB() throws SQLException {
 
-        PostgreDB db = new PostgreDB(config);
+        CompactGraph graph = CompactGraph.fromSegments(fetchSegmentsFromDB());
 
-        Connection con = db.getConnection();
-
-        Statement fetchStmt = con.createStatement();
-        String fetchQuery =  "select sg.id, public.st_astext(geometry), source, target  from "+graphTable+" sg " +
-                "        join "+subgraphTable+" sub on (sg.id = sub.id) " +
-                "        where name='"+subgraphName+"';";
-
-        ResultSet rs = fetchStmt.executeQuery(fetchQuery);
+        if (useSnapshot) {
+            try {
+                snapshot.write(snapshotFile, graph);
+            } catch (IOException e) {
+                Logger.getLogger(GraphFetcher.class.getName()).log(Level.SEVERE, null, e);
+            }
+        }
+        return graph;
+    }
 
-        List<Segment> segments = new ArrayList<>();
+    /**
+     * Raw rows of the segment query, decoded into segments by the worker threads
+     */
+    private static class RowBatch {
+        long sequence;
+        int size;
+        int[] ids, sources, targets;
+        byte[][] geometries;
+
+        RowBatch(long sequence) {
+            this.sequence = sequence;
+            ids = new int[ROW_BATCH_SIZE];
+            sources = new int[ROW_BATCH_SIZE];
+            targets = new int[ROW_BATCH_SIZE];
+            geometries = new byte[ROW_BATCH_SIZE][];
+        }
+    }
 
-        Hints hints = new Hints(Hints.CRS, DefaultGeographicCRS.WGS84);
-        GeometryFactory geometryFactory = JTSFactoryFinder.getGeometryFactory(hints);
-        WKTReader2 reader = new WKTReader2(geometryFactory);
+    private static final int ROW_BATCH_SIZE = 1000;
+    private static final RowBatch END_OF_ROWS = new RowBatch(-1);
 
+    /**
+     * Fetches the segments with their geometries as WKB. The id range is read in partitions on several
+     * connections, the loader threads only drain their cursors into batches of raw rows and a pool of workers
+     * decodes the geometries. The segments are ordered by partition and keep the query order within one.
+     */
+    private Collection<Segment> fetchSegmentsFromDB() throws SQLException {
+        String from = "from "+graphTable+" sg " +
+                "        join "+subgraphTable+" sub on (sg.id = sub.id) " +
+                "        where name='"+subgraphName+"'";
+        String fetchQuery =  "select sg.id, public.st_asbinary(geometry), source, target " + from +
+                " and sg.id >= ? and sg.id < ?;";
+
+        PartitionedLoader loader = new PartitionedLoader(config);
+        long[] bounds = loader.fetchIdBounds("sg.id", from);
+        if (bounds == null) {
+            return new ArrayList<>();
+        }
 
-        while (rs.next()) {
-            int id = rs.getInt(1);
-            int source = rs.getInt(3);
-            int target = rs.getInt(4);
+        GeometryFactory geometryFactory = createGeometryFactory();
+
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        BlockingQueue<RowBatch> queue = new ArrayBlockingQueue<>(4 * workers);
+        Map<Long, List<Segment>> decoded = new ConcurrentSkipListMap<>();
+
+        //first decoding error, the loaders stop at their next batch and it is thrown to the caller
+        AtomicReference<SQLException> failure = new AtomicReference<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < workers; ++w) {
+            futures.add(executor.submit(() -> {
+                WKBReader reader = new WKBReader(geometryFactory);
+                while (true) {
+                    RowBatch batch = queue.take();
+                    if (batch == END_OF_ROWS) break;
+                    //after a failure the batches are only drained, so no loader blocks on the full queue
+                    if (failure.get() != null) continue;
+
+                    List<Segment> segments = new ArrayList<>(batch.size);
+                    for (int i = 0; i < batch.size; ++i) {
+                        try {
+                            Geometry geom = reader.read(batch.geometries[i]);
+                            segments.add(new Segment(batch.ids[i], batch.sources[i], batch.targets[i], -1, -1, geom));
+                        } catch (ParseException e) {
+                            failure.compareAndSet(null,
+                                    new SQLException("Cannot decode the geometry of segment " + batch.ids[i], e));
+                            break;
+                        }
+                    }
+                    if (failure.get() == null) {
+                        decoded.put(batch.sequence, segments);
+                    }
+                }
+                return null;
+            }));
+        }
 
-            try {
-                Geometry geom = reader.read(rs.getString(2));
-                Segment segment = new Segment(id, source, target,  -1, -1, geom);
-                segments.add(segment);
-            } catch (ParseException e) {
-                e.printStackTrace();
-                System.exit(4);
+        try {
+            loader.loadIdRanges(fetchQuery, bounds[0], bounds[1], (rs, partition) -> {
+                //sequence numbers are ordered by partition first
+                long sequence = ((long) partition) << 32;
+                RowBatch batch = new RowBatch(sequence++);
+                try {
+                    while (rs.next()) {
+                        batch.ids[batch.size] = rs.getInt(1);
+                        batch.geometries[batch.size] = rs.getBytes(2);
+                        batch.sources[batch.size] = rs.getInt(3);
+                        batch.targets[batch.size] = rs.getInt(4);
+
+                        if (++batch.size == ROW_BATCH_SIZE) {
+                            if (failure.get() != null) {
+                                throw failure.get();
+                            }
+                            queue.put(batch);
+                            batch = new RowBatch(sequence++);
+                        }
+                    }
+                    if (batch.size > 0) {
+                        queue.put(batch);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while fetching segments", e);
+                }
+                return null;
+            });
+
+            for (int w = 0; w < workers; ++w) {
+                queue.put(END_OF_ROWS);
             }
-
-
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while decoding segments", e);
+        } catch (ExecutionException e) {
+            throw new SQLException("Decoding segments failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
         }
-        rs.close();
-        fetchStmt.close();
-        con.close();
-        db.close();
 
+        List<Segment> segments = new ArrayList<>();
+        for (List<Segment> part : decoded.values()) {
+            segments.addAll(part);
+        }
         return segments;
     }
 
-    public SortedMap<Date, Set<Segment>> fetchOutlierMap() throws SQLException {
-        SortedMap<Date, Set<Segment>> result = new TreeMap<>();
+    public static GeometryFactory createGeometryFactory() {
+        Hints hints = new Hints(Hints.CRS, DefaultGeographicCRS.WGS84);
+        return JTSFactoryFinder.getGeometryFactory(hints);
+    }
 
-        String selectOutlierQuery = "select o.id, o.time from "+outlierTable+" o " +
+    /**
+     * Fetches the outliers of the subgraph into a columnar store. The time range is read in partitions on several
+     * connections, each ordered by time through a server side cursor, and the partial stores are concatenated.
+     * Outliers of streets that are not part of the graph only register their time point.
+     * @param graph Graph that provides the dense edge indices
+     */
+    @Override
+    public OutlierStore fetchOutliers(CompactGraph graph) throws SQLException {
+        String from = "from "+outlierTable+" o " +
                 "join "+subgraphTable+" sub on (o.id = sub.id) " +
-                "where sub.name='"+subgraphName+"';";
-
-        PostgreDB db = new PostgreDB(config);
-        Connection con = db.getConnection();
-        Statement selectOutlierStmt = con.createStatement();
-
-        ResultSet rs = selectOutlierStmt.executeQuery(selectOutlierQuery);
-
-        while (rs.next()) {
-            int id = rs.getInt(1);
-            Date t = new Date(rs.getTimestamp(2).getTime());
-
-            if (!result.containsKey(t)) {
-                result.put(t, new HashSet<>());
-            }
-
-            Segment s = new Segment(id);
-            s.isOutlier = true;
-            result.get(t).add(s);
+                "where sub.name='"+subgraphName+"'";
+        String selectOutlierQuery = "select o.id, o.time " + from +
+                " and o.time >= ? and o.time < ? " +
+                "order by o.time;";
+
+        PartitionedLoader loader = new PartitionedLoader(config);
+        long[] bounds = loader.fetchTimeBounds("o.time", from);
+        if (bounds == null) {
+            return new OutlierStore.Builder().build();
         }
 
-        rs.close();
-        selectOutlierStmt.close();
-        con.close();
-        db.close();
-
-        return result;
-    }
+        List<OutlierStore> parts = loader.loadTimeRanges(selectOutlierQuery, bounds[0], bounds[1], (rs, partition) -> {
+            OutlierStore.Builder builder = new OutlierStore.Builder();
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                long t = rs.getTimestamp(2).getTime();
+                builder.add(t, graph.edgeIndexOf(id));
+            }
+            return builder.build();
+        });
 
-    public Map<Integer, LabeledDefaultEdge> getEdgesMap() {
-        return edgesMap;
+        return OutlierStore.concat(parts);
     }
 
-    public int getMaxNodeId() {
-        return maxNodeId;
-    }
 }
@@ -0,0 +1,199 @@
+package de.l3s.st_discovery.graph;
+
+import de.l3s.st_discovery.model.regiongrowing.Segment;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Local snapshot of a street graph, so later runs can start without fetching the network from the database.
+ *
+ * Layout (big endian):
+ * <pre>
+ * header      magic, version, graphTable, subgraphTable, subgraphName (UTF), vertexCount, edgeCount (int), fingerprint (long)
+ * nodeIds     vertexCount x int
+ * labels      edgeCount x int
+ * sources     edgeCount x int (node ids)
+ * targets     edgeCount x int (node ids)
+ * geomOffsets (edgeCount + 1) x long
+ * geometries  WKB
+ * </pre>
+ * Edges are stored in the order of the {@link CompactGraph}. The snapshot is loaded via memory mapping and
+ * only accepted if it was written for the same graphTable, subgraphTable and subgraphName.
+ */
+public class GraphSnapshot {
+
+    private static final int MAGIC = 0x53544753;
+    private static final int VERSION = 1;
+
+    private String graphTable, subgraphTable, subgraphName;
+
+    public GraphSnapshot(String graphTable, String subgraphTable, String subgraphName) {
+        this.graphTable = graphTable;
+        this.subgraphTable = subgraphTable;
+        this.subgraphName = subgraphName;
+    }
+
+    /**
+     * Returns the default snapshot file for the graph
+     */
+    public File getFile() {
+        String name = "graph_" + graphTable + "_" + subgraphTable + "_" + subgraphName + ".snapshot";
+        return new File(name.replaceAll("[^A-Za-z0-9_.-]", "_"));
+    }
+
+    /**
+     * Writes the graph to file. The file is replaced atomically once it is complete.
+     */
+    public void write(File file, CompactGraph graph) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        WKBWriter writer = new WKBWriter();
+
+        int edgeCount = graph.getEdgeCount();
+        byte[][] geometries = new byte[edgeCount][];
+        for (int e = 0; e < edgeCount; ++e) {
+            Geometry geom = graph.getEdge(e).getGeometry();
+            geometries[e] = (geom != null) ? writer.write(geom) : new byte[0];
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 20))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(graphTable);
+            out.writeUTF(subgraphTable);
+            out.writeUTF(subgraphName);
+            out.writeInt(graph.getVertexCount());
+            out.writeInt(edgeCount);
+            out.writeLong(graph.fingerprint());
+
+            for (int v = 0; v < graph.getVertexCount(); ++v) {
+                out.writeInt(graph.getNodeId(v));
+            }
+            for (int e = 0; e < edgeCount; ++e) {
+                out.writeInt(graph.getLabel(e));
+            }
+            for (int e = 0; e < edgeCount; ++e) {
+                out.writeInt(graph.getNodeId(graph.getEdgeSource(e)));
+            }
+            for (int e = 0; e < edgeCount; ++e) {
+                out.writeInt(graph.getNodeId(graph.getEdgeTarget(e)));
+            }
+            long offset = 0;
+            for (int e = 0; e < edgeCount; ++e) {
+                out.writeLong(offset);
+                offset += geometries[e].length;
+            }
+            out.writeLong(offset);
+            for (byte[] geometry : geometries) {
+                out.write(geometry);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the segments stored in file
+     * @param file Snapshot file
+     * @param geometryFactory Factory for the decoded geometries
+     * @return The segments in compact graph order and the fingerprint of the stored graph
+     * @throws IOException If the file can not be read or belongs to a different graph
+     */
+    public Contents read(File file, GeometryFactory geometryFactory) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Graph snapshot too large to map: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a graph snapshot: " + file);
+            if (buffer.getInt() != VERSION) throw new IOException("Unsupported graph snapshot version: " + file);
+            if (!graphTable.equals(readUTF(buffer)) || !subgraphTable.equals(readUTF(buffer))
+                    || !subgraphName.equals(readUTF(buffer))) {
+                throw new IOException("Graph snapshot " + file + " belongs to a different graph");
+            }
+            int vertexCount = buffer.getInt();
+            int edgeCount = buffer.getInt();
+            long fingerprint = buffer.getLong();
+
+            int[] nodeIds = readInts(buffer, vertexCount);
+            int[] labels = readInts(buffer, edgeCount);
+            int[] sources = readInts(buffer, edgeCount);
+            int[] targets = readInts(buffer, edgeCount);
+            long[] offsets = new long[edgeCount + 1];
+            buffer.asLongBuffer().get(offsets);
+            buffer.position(buffer.position() + 8 * (edgeCount + 1));
+            ByteBuffer geometries = buffer.slice();
+
+            Segment[] segments = new Segment[edgeCount];
+            ThreadLocal<WKBReader> readers = ThreadLocal.withInitial(() -> new WKBReader(geometryFactory));
+            IntStream.range(0, edgeCount).parallel().forEach(e -> {
+                int length = (int) (offsets[e + 1] - offsets[e]);
+                Geometry geom = null;
+                if (length > 0) {
+                    byte[] wkb = new byte[length];
+                    ByteBuffer view = geometries.duplicate();
+                    view.position((int) offsets[e]);
+                    view.get(wkb);
+                    try {
+                        geom = readers.get().read(wkb);
+                    } catch (ParseException ex) {
+                        throw new UncheckedIOException(new IOException("Corrupt geometry in graph snapshot", ex));
+                    }
+                }
+                segments[e] = new Segment(labels[e], sources[e], targets[e], -1, -1, geom);
+            });
+
+            return new Contents(nodeIds, new ArrayList<>(Arrays.asList(segments)), fingerprint);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated graph snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Content of a snapshot file
+     */
+    public static class Contents {
+        public final int[] nodeIds;
+        public final List<Segment> segments;
+        public final long fingerprint;
+
+        Contents(int[] nodeIds, List<Segment> segments, long fingerprint) {
+            this.nodeIds = nodeIds;
+            this.segments = segments;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] result = new int[count];
+        buffer.asIntBuffer().get(result);
+        buffer.position(buffer.position() + 4 * count);
+        return result;
+    }
+
+    private static String readUTF(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        //writeUTF uses modified UTF-8, which matches UTF-8 for the table and graph names
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
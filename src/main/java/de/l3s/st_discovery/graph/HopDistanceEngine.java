@@ -0,0 +1,173 @@
+package de.l3s.st_discovery.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes hop bounded distances on a {@link CompactGraph} with a bit-parallel multi-source breadth first search.
+ *
+ * Sources are processed in batches of 64 consecutive vertices. Each vertex carries one long word per frontier,
+ * bit b marking that source b of the batch has reached it, so a single traversal of the frontier advances all
+ * 64 searches at once. Batches are distributed over the cores with fork/join.
+ */
+public class HopDistanceEngine {
+
+    private static final int BATCH_SIZE = 64;
+    private static final int BATCHES_PER_TASK = 4;
+
+    private final CompactGraph graph;
+    private final int maxHops;
+
+    public HopDistanceEngine(CompactGraph graph, int maxHops) {
+        if (maxHops > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("maxHops must not exceed " + Byte.MAX_VALUE);
+        }
+        this.graph = graph;
+        this.maxHops = maxHops;
+    }
+
+    /**
+     * Computes for every vertex the vertices reachable within maxHops.
+     * @return Per source vertex the sorted entries (vertex << 8 | hops), including the source itself with 0 hops
+     */
+    public long[][] computeRows() {
+        int vertexCount = graph.getVertexCount();
+        long[][] rows = new long[vertexCount][];
+        int batches = (vertexCount + BATCH_SIZE - 1) / BATCH_SIZE;
+
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(vertexCount));
+        ForkJoinPool.commonPool().invoke(new BatchTask(0, batches, rows, scratch));
+        return rows;
+    }
+
+    private class BatchTask extends RecursiveAction {
+        private final int fromBatch, toBatch;
+        private final long[][] rows;
+        private final ThreadLocal<Scratch> scratch;
+
+        BatchTask(int fromBatch, int toBatch, long[][] rows, ThreadLocal<Scratch> scratch) {
+            this.fromBatch = fromBatch;
+            this.toBatch = toBatch;
+            this.rows = rows;
+            this.scratch = scratch;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBatch - fromBatch <= BATCHES_PER_TASK) {
+                Scratch s = scratch.get();
+                for (int b = fromBatch; b < toBatch; ++b) {
+                    processBatch(b * BATCH_SIZE, s, rows);
+                }
+                return;
+            }
+            int mid = (fromBatch + toBatch) >>> 1;
+            invokeAll(new BatchTask(fromBatch, mid, rows, scratch), new BatchTask(mid, toBatch, rows, scratch));
+        }
+    }
+
+    private void processBatch(int firstSource, Scratch s, long[][] rows) {
+        int sources = Math.min(BATCH_SIZE, graph.getVertexCount() - firstSource);
+        s.frontierSize = 0;
+        s.touchedSize = 0;
+
+        for (int b = 0; b < sources; ++b) {
+            int v = firstSource + b;
+            long bit = 1L << b;
+            s.seen[v] |= bit;
+            s.frontier[v] |= bit;
+            s.frontierList[s.frontierSize++] = v;
+            s.touch(v);
+            s.rowSizes[b] = 0;
+            s.append(b, ((long) v) << 8);
+        }
+
+        for (int hop = 1; hop <= maxHops && s.frontierSize > 0; ++hop) {
+            int nextSize = 0;
+            for (int i = 0; i < s.frontierSize; ++i) {
+                int u = s.frontierList[i];
+                long bits = s.frontier[u];
+                for (int e = graph.outgoingStart(u); e < graph.outgoingEnd(u); ++e) {
+                    int v = graph.getEdgeTarget(e);
+                    long reached = bits & ~s.seen[v];
+                    if (reached == 0) continue;
+                    if (s.seen[v] == 0) {
+                        s.touch(v);
+                    }
+                    if (s.next[v] == 0) {
+                        s.nextList[nextSize++] = v;
+                    }
+                    s.next[v] |= reached;
+                    s.seen[v] |= reached;
+                }
+            }
+
+            //record the vertices reached in this level and advance the frontier
+            for (int i = 0; i < s.frontierSize; ++i) {
+                s.frontier[s.frontierList[i]] = 0;
+            }
+            for (int i = 0; i < nextSize; ++i) {
+                int v = s.nextList[i];
+                long reached = s.next[v];
+                while (reached != 0) {
+                    int b = Long.numberOfTrailingZeros(reached);
+                    s.append(b, (((long) v) << 8) | hop);
+                    reached &= reached - 1;
+                }
+                s.frontier[v] = s.next[v];
+                s.next[v] = 0;
+            }
+            int[] tmp = s.frontierList;
+            s.frontierList = s.nextList;
+            s.nextList = tmp;
+            s.frontierSize = nextSize;
+        }
+
+        for (int i = 0; i < s.frontierSize; ++i) {
+            s.frontier[s.frontierList[i]] = 0;
+        }
+        for (int i = 0; i < s.touchedSize; ++i) {
+            s.seen[s.touched[i]] = 0;
+        }
+
+        for (int b = 0; b < sources; ++b) {
+            long[] row = Arrays.copyOf(s.rowEntries[b], s.rowSizes[b]);
+            Arrays.sort(row);
+            rows[firstSource + b] = row;
+        }
+    }
+
+    /**
+     * Per thread working memory, reused across batches
+     */
+    private static class Scratch {
+        long[] seen, frontier, next;
+        int[] frontierList, nextList, touched;
+        int frontierSize, touchedSize;
+        long[][] rowEntries;
+        int[] rowSizes;
+
+        Scratch(int vertexCount) {
+            seen = new long[vertexCount];
+            frontier = new long[vertexCount];
+            next = new long[vertexCount];
+            frontierList = new int[vertexCount];
+            nextList = new int[vertexCount];
+            touched = new int[vertexCount];
+            rowEntries = new long[BATCH_SIZE][16];
+            rowSizes = new int[BATCH_SIZE];
+        }
+
+        void touch(int v) {
+            touched[touchedSize++] = v;
+        }
+
+        void append(int source, long entry) {
+            if (rowSizes[source] == rowEntries[source].length) {
+                rowEntries[source] = Arrays.copyOf(rowEntries[source], rowSizes[source] * 2);
+            }
+            rowEntries[source][rowSizes[source]++] = entry;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package de.l3s.st_discovery.graph;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar, time indexed store of outliers.
+ *
+ * Time points are kept as ascending epoch milliseconds. The outliers of time point i are the dense edge indices
+ * edges[offsets[i]]..edges[offsets[i+1]-1], sorted ascending and without duplicates. Time points without any
+ * outlier edge in the graph are kept, so the time index matches the outlier table.
+ */
+public class OutlierStore {
+
+    private final long[] times;
+    private final int[] offsets;
+    private final int[] edges;
+
+    private OutlierStore(long[] times, int[] offsets, int[] edges) {
+        this.times = times;
+        this.offsets = offsets;
+        this.edges = edges;
+    }
+
+    /**
+     * Returns the number of time points
+     */
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * Returns the total number of outliers
+     */
+    public int getOutlierCount() {
+        return edges.length;
+    }
+
+    public long getTime(int timeIndex) {
+        return times[timeIndex];
+    }
+
+    /**
+     * Returns the position of the first outlier of a time point, use with {@link #edgeAt(int)}
+     */
+    public int start(int timeIndex) {
+        return offsets[timeIndex];
+    }
+
+    /**
+     * Returns the position after the last outlier of a time point
+     */
+    public int end(int timeIndex) {
+        return offsets[timeIndex + 1];
+    }
+
+    public int edgeAt(int position) {
+        return edges[position];
+    }
+
+    /**
+     * Returns a copy of the sorted outlier edges of a time point
+     */
+    public int[] getEdges(int timeIndex) {
+        return Arrays.copyOfRange(edges, offsets[timeIndex], offsets[timeIndex + 1]);
+    }
+
+    /**
+     * Returns the index of a time point or -1 if the store does not contain it
+     */
+    public int indexOf(long time) {
+        int pos = Arrays.binarySearch(times, time);
+        return (pos >= 0) ? pos : -1;
+    }
+
+    /**
+     * Concatenates stores of consecutive, non overlapping time ranges
+     * @param parts Stores ordered by time
+     */
+    public static OutlierStore concat(List<OutlierStore> parts) {
+        int timeCount = 0, edgeCount = 0;
+        for (OutlierStore part : parts) {
+            timeCount += part.times.length;
+            edgeCount += part.edges.length;
+        }
+
+        long[] times = new long[timeCount];
+        int[] offsets = new int[timeCount + 1];
+        int[] edges = new int[edgeCount];
+        int t = 0, e = 0;
+        for (OutlierStore part : parts) {
+            if (t > 0 && part.times.length > 0 && part.times[0] <= times[t - 1]) {
+                throw new IllegalArgumentException("Outlier stores have to be ordered by time");
+            }
+            System.arraycopy(part.times, 0, times, t, part.times.length);
+            System.arraycopy(part.edges, 0, edges, e, part.edges.length);
+            for (int i = 0; i < part.times.length; ++i) {
+                offsets[t + i + 1] = e + part.offsets[i + 1];
+            }
+            t += part.times.length;
+            e += part.edges.length;
+        }
+        return new OutlierStore(times, offsets, edges);
+    }
+
+    /**
+     * Fills the store from rows that arrive ordered by time
+     */
+    public static class Builder {
+        private long[] times = new long[1024];
+        private int[] offsets = new int[1025];
+        private int[] edges = new int[1 << 16];
+        private int timeCount = 0;
+        private int edgeCount = 0;
+
+        /**
+         * Adds an outlier. Rows have to be added in ascending time order.
+         * @param time Epoch milliseconds
+         * @param edge Dense edge index or -1 to only register the time point
+         */
+        public void add(long time, int edge) {
+            if (timeCount == 0 || times[timeCount - 1] != time) {
+                if (timeCount > 0 && time < times[timeCount - 1]) {
+                    throw new IllegalArgumentException("Outliers have to be added in ascending time order");
+                }
+                closeTimePoint();
+                if (timeCount == times.length) {
+                    times = Arrays.copyOf(times, timeCount * 2);
+                    offsets = Arrays.copyOf(offsets, timeCount * 2 + 1);
+                }
+                times[timeCount++] = time;
+            }
+            if (edge < 0) return;
+
+            if (edgeCount == edges.length) {
+                edges = Arrays.copyOf(edges, edgeCount * 2);
+            }
+            edges[edgeCount++] = edge;
+        }
+
+        /**
+         * Sorts and deduplicates the edges of the current time point
+         */
+        private void closeTimePoint() {
+            if (timeCount == 0) return;
+            int start = offsets[timeCount - 1];
+            Arrays.sort(edges, start, edgeCount);
+            int distinct = start;
+            for (int i = start; i < edgeCount; ++i) {
+                if (distinct == start || edges[distinct - 1] != edges[i]) {
+                    edges[distinct++] = edges[i];
+                }
+            }
+            edgeCount = distinct;
+            offsets[timeCount] = edgeCount;
+        }
+
+        public OutlierStore build() {
+            closeTimePoint();
+            return new OutlierStore(Arrays.copyOf(times, timeCount),
+                    Arrays.copyOf(offsets, timeCount + 1),
+                    Arrays.copyOf(edges, edgeCount));
+        }
+    }
+}
@@ -3,72 +3,185 @@ package de.l3s.st_discovery.graph;
 import de.l3s.st_discovery.model.regiongrowing.LabeledDefaultEdge;
 
 import java.util.*;
-
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Set of edges of a {@link CompactGraph}.
+ *
+ * The edges are kept sorted by their dense edge index, so intersection and subset tests are linear merges that
+ * do not allocate. Subgraphs are identified by their id, which stays the same when edges are added.
+ */
 public class Subgraph implements Iterable<LabeledDefaultEdge> {
-    private static int idCounter = 0;
+    //subgraphs are created by parallel streams
+    private static final AtomicInteger idCounter = new AtomicInteger();
 
-    Set<LabeledDefaultEdge> edges;
+    private int[] indices;
+    private LabeledDefaultEdge[] edges;
+    private int size;
     private int id;
 
     public Subgraph() {
-        edges = new HashSet<>();
-        id = idCounter++;
+        indices = new int[4];
+        edges = new LabeledDefaultEdge[4];
+        id = idCounter.getAndIncrement();
     }
 
     public Subgraph(Set<LabeledDefaultEdge> edges) {
-        this.edges = edges;
+        this();
+        for (LabeledDefaultEdge e : edges) {
+            addEdge(e);
+        }
     }
 
+    /**
+     * Adds an edge of the compact graph, edges added in ascending index order are appended
+     */
     public void addEdge(LabeledDefaultEdge e) {
-        edges.add(e);
+        int pos = (size == 0 || indices[size - 1] < e.index) ? -(size + 1) : Arrays.binarySearch(indices, 0, size, e.index);
+        if (pos >= 0) return;
+
+        pos = -(pos + 1);
+        if (size == indices.length) {
+            indices = Arrays.copyOf(indices, size * 2);
+            edges = Arrays.copyOf(edges, size * 2);
+        }
+        System.arraycopy(indices, pos, indices, pos + 1, size - pos);
+        System.arraycopy(edges, pos, edges, pos + 1, size - pos);
+        indices[pos] = e.index;
+        edges[pos] = e;
+        ++size;
     }
 
-    public boolean isSubsetOf(Subgraph other) {
-        return other.getEdges().containsAll(edges);
+    /**
+     * Returns the number of edges both subgraphs contain
+     */
+    public int intersectionSize(Subgraph other) {
+        int shared = 0;
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            int lhs = indices[i], rhs = other.indices[j];
+            if (lhs == rhs) {
+                ++shared;
+                ++i;
+                ++j;
+            } else if (lhs < rhs) {
+                ++i;
+            } else {
+                ++j;
+            }
+        }
+        return shared;
     }
 
-    public Subgraph intersection(Subgraph other)  {
-        Set<LabeledDefaultEdge> result = new HashSet<>(edges);
-        result.retainAll(other.getEdges());
-
-        return new Subgraph(result);
+    /**
+     * Returns the Jaccard similarity of the edge sets
+     */
+    public double jaccard(Subgraph other) {
+        int shared = intersectionSize(other);
+        int total = size + other.size - shared;
+        return (total == 0) ? 0.0 : ((double) shared) / total;
     }
 
-    public Subgraph union(Subgraph other) {
-        Set<LabeledDefaultEdge> result = new HashSet<>(edges);
-        result.addAll(other.getEdges());
+    public boolean isSubsetOf(Subgraph other) {
+        return size <= other.size && intersectionSize(other) == size;
+    }
 
-        return new Subgraph(result);
+    public Subgraph intersection(Subgraph other)  {
+        Subgraph result = new Subgraph();
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (indices[i] == other.indices[j]) {
+                result.addEdge(edges[i]);
+                ++i;
+                ++j;
+            } else if (indices[i] < other.indices[j]) {
+                ++i;
+            } else {
+                ++j;
+            }
+        }
+        return result;
     }
 
-    public double distance(Subgraph other) {
-        //double dist = Double.POSITIVE_INFINITY;
-        edges.stream().parallel().forEach(e1 -> {
-            other.getEdges().stream().parallel().forEach(e2 -> {
-            //for (LabeledDefaultEdge e2: other.getEdges()) {
-                //dist = Math.min(dist, e1.distance(e2));
-                e1.distance(e2);
-            });
-        });
-        return -1;
+    public Subgraph union(Subgraph other) {
+        Subgraph result = copy();
+        result.addAll(other);
+        return result;
     }
 
     @Override
     public Iterator<LabeledDefaultEdge> iterator() {
-        return edges.iterator();
+        return Collections.unmodifiableList(Arrays.asList(edges).subList(0, size)).iterator();
+    }
+
+    /**
+     * Returns a subgraph with the same edges and a new id
+     */
+    public Subgraph copy() {
+        Subgraph result = new Subgraph();
+        result.addAll(this);
+        return result;
     }
 
+    /**
+     * Adds the edges of other with a linear merge
+     */
     public void addAll(Subgraph other) {
-        edges.addAll(other.getEdges());
+        int[] mergedIndices = new int[size + other.size];
+        LabeledDefaultEdge[] mergedEdges = new LabeledDefaultEdge[size + other.size];
+        int i = 0, j = 0, n = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && indices[i] < other.indices[j])) {
+                mergedIndices[n] = indices[i];
+                mergedEdges[n++] = edges[i++];
+            } else {
+                if (i < size && indices[i] == other.indices[j]) {
+                    ++i;
+                }
+                mergedIndices[n] = other.indices[j];
+                mergedEdges[n++] = other.edges[j++];
+            }
+        }
+        indices = (n == 0) ? new int[4] : mergedIndices;
+        edges = (n == 0) ? new LabeledDefaultEdge[4] : mergedEdges;
+        size = n;
     }
 
 
     public int size() {
-        return edges.size();
+        return size;
+    }
+
+    /**
+     * Returns the dense edge index of the i-th edge, edges are ordered by index
+     */
+    public int getEdgeIndex(int i) {
+        return indices[i];
     }
 
+    /**
+     * Returns a read-only view of the edges, iterated in the order of their dense edge index. Edges are added
+     * with {@link #addEdge(LabeledDefaultEdge)} and {@link #addAll(Subgraph)}.
+     */
     public Set<LabeledDefaultEdge> getEdges() {
-        return edges;
+        return new AbstractSet<LabeledDefaultEdge>() {
+            @Override
+            public Iterator<LabeledDefaultEdge> iterator() {
+                return Subgraph.this.iterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof LabeledDefaultEdge)) return false;
+                int pos = Arrays.binarySearch(indices, 0, size, ((LabeledDefaultEdge) o).index);
+                return pos >= 0 && edges[pos].equals(o);
+            }
+        };
     }
 
     public int getId() {
@@ -80,8 +193,7 @@ public class Subgraph implements Iterable<LabeledDefaultEdge> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Subgraph that = (Subgraph) o;
-        return id == that.id &&
-                Objects.equals(edges, that.edges);
+        return id == that.id;
     }
 
     @Override
@@ -0,0 +1,164 @@
+package de.l3s.st_discovery.graph;
+
+import de.l3s.st_discovery.model.regiongrowing.LabeledDefaultEdge;
+import de.l3s.st_discovery.util.geography.ProjectionService;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.index.strtree.ItemDistance;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.operation.TransformException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Computes minimum distances between the streets of subgraphs in memory.
+ *
+ * The street geometries are projected once to meters with a {@link ProjectionService}, which keeps them on the
+ * edges for later runs over the same street network. Every subgraph gets an STR-tree of its projected streets, the distance of two subgraphs is found
+ * with a branch and bound search over both trees that skips nodes whose bounding boxes are further apart than
+ * the closest streets found so far. Small pairs of subgraphs are compared directly.
+ * The engine is thread safe.
+ */
+public class SubgraphDistanceEngine {
+
+    //pairs of streets up to which two subgraphs are compared without trees
+    private static final int DIRECT_PAIRS = 64;
+
+    private static final ItemDistance STREET_DISTANCE =
+            (lhs, rhs) -> ((Geometry) lhs.getItem()).distance((Geometry) rhs.getItem());
+
+    //projected street geometries by dense edge index, null for streets without geometry
+    private final Geometry[] projected;
+    private final Map<Subgraph, STRtree> trees = new ConcurrentHashMap<>();
+
+    private SubgraphDistanceEngine(Geometry[] projected) {
+        this.projected = projected;
+    }
+
+    /**
+     * Projects the streets of the subgraphs
+     * @param subgraphs Subgraphs whose distances are requested
+     */
+    public static SubgraphDistanceEngine create(List<Subgraph> subgraphs) throws FactoryException, TransformException {
+        int edgeCount = 0;
+        for (Subgraph sg : subgraphs) {
+            for (int i = 0; i < sg.size(); ++i) {
+                edgeCount = Math.max(edgeCount, sg.getEdgeIndex(i) + 1);
+            }
+        }
+        LabeledDefaultEdge[] edges = new LabeledDefaultEdge[edgeCount];
+        for (Subgraph sg : subgraphs) {
+            for (LabeledDefaultEdge e : sg) {
+                edges[e.index] = e;
+            }
+        }
+
+        List<LabeledDefaultEdge> streets = Arrays.stream(edges).filter(Objects::nonNull).collect(Collectors.toList());
+        ProjectionService projection = ProjectionService.project(streets);
+        Geometry[] projected = new Geometry[edgeCount];
+        for (LabeledDefaultEdge e : streets) {
+            if (e.getProjection() == projection) {
+                projected[e.index] = e.getProjectedGeometry();
+            }
+        }
+        return new SubgraphDistanceEngine(projected);
+    }
+
+    /**
+     * Returns the minimum distance in meters between the streets of two subgraphs
+     * @return The distance, 0 for subgraphs sharing a street or -1 if one of them has no geometry
+     */
+    public double distance(Subgraph lhs, Subgraph rhs) {
+        if (lhs.intersectionSize(rhs) > 0) {
+            return 0.0;
+        }
+        if ((long) lhs.size() * rhs.size() <= DIRECT_PAIRS) {
+            return directDistance(lhs, rhs);
+        }
+
+        STRtree lhsTree = trees.computeIfAbsent(lhs, this::buildTree);
+        STRtree rhsTree = trees.computeIfAbsent(rhs, this::buildTree);
+        if (lhsTree.size() == 0 || rhsTree.size() == 0) {
+            return -1;
+        }
+        Object[] closest = lhsTree.nearestNeighbour(rhsTree, STREET_DISTANCE);
+        return ((Geometry) closest[0]).distance((Geometry) closest[1]);
+    }
+
+    /**
+     * Tests if two subgraphs have streets within a distance in meters. The search stops at the first pair of
+     * close streets and only compares streets whose bounding boxes are close, so it is cheaper than
+     * {@link #distance(Subgraph, Subgraph)} for pairs below a distance threshold.
+     * @return true for subgraphs sharing a street, false if one of them has no geometry
+     */
+    public boolean isWithinDistance(Subgraph lhs, Subgraph rhs, double meters) {
+        if (meters < 0) {
+            return false;
+        }
+        if (lhs.intersectionSize(rhs) > 0) {
+            return true;
+        }
+        if (lhs.size() > rhs.size()) {
+            Subgraph swap = lhs;
+            lhs = rhs;
+            rhs = swap;
+        }
+
+        boolean direct = (long) lhs.size() * rhs.size() <= DIRECT_PAIRS;
+        STRtree rhsTree = direct ? null : trees.computeIfAbsent(rhs, this::buildTree);
+        for (int i = 0; i < lhs.size(); ++i) {
+            Geometry lhsStreet = projected[lhs.getEdgeIndex(i)];
+            if (lhsStreet == null) continue;
+            if (direct) {
+                for (int j = 0; j < rhs.size(); ++j) {
+                    Geometry rhsStreet = projected[rhs.getEdgeIndex(j)];
+                    if (rhsStreet != null && lhsStreet.isWithinDistance(rhsStreet, meters)) {
+                        return true;
+                    }
+                }
+            } else {
+                Envelope search = new Envelope(lhsStreet.getEnvelopeInternal());
+                search.expandBy(meters);
+                for (Object rhsStreet : rhsTree.query(search)) {
+                    if (lhsStreet.isWithinDistance((Geometry) rhsStreet, meters)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private double directDistance(Subgraph lhs, Subgraph rhs) {
+        double result = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < lhs.size(); ++i) {
+            Geometry lhsStreet = projected[lhs.getEdgeIndex(i)];
+            if (lhsStreet == null) continue;
+            for (int j = 0; j < rhs.size(); ++j) {
+                Geometry rhsStreet = projected[rhs.getEdgeIndex(j)];
+                if (rhsStreet != null) {
+                    result = Math.min(result, lhsStreet.distance(rhsStreet));
+                }
+            }
+        }
+        return (result == Double.POSITIVE_INFINITY) ? -1 : result;
+    }
+
+    private STRtree buildTree(Subgraph sg) {
+        STRtree tree = new STRtree();
+        for (int i = 0; i < sg.size(); ++i) {
+            Geometry street = projected[sg.getEdgeIndex(i)];
+            if (street != null) {
+                tree.insert(street.getEnvelopeInternal(), street);
+            }
+        }
+        tree.build();
+        return tree;
+    }
+}
@@ -1,8 +1,11 @@
 package de.l3s.st_discovery.model;
 
+import de.l3s.st_discovery.graph.OutlierStore;
 import de.l3s.st_discovery.graph.Subgraph;
+import de.l3s.st_discovery.graph.SubgraphDistanceEngine;
 import de.l3s.st_discovery.model.regiongrowing.LabeledDefaultEdge;
 import de.l3s.st_discovery.output.DependencyRecord;
+import de.l3s.st_discovery.source.DataSources;
 import de.l3s.st_discovery.util.configuration.Configurable;
 import de.l3s.st_discovery.util.configuration.Configuration;
 import de.l3s.st_discovery.util.configuration.ConfigurationParser;
@@ -11,18 +14,26 @@ import de.l3s.st_discovery.util.information.MutualInformation;
 import de.l3s.st_discovery.util.misc.ProgressBar;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.operation.TransformException;
 
 import java.sql.*;
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class DependencyCalculator extends Configurable {
 
     private double th_d, th_sim;
     private String outlierTable, timeColumn, subgraphName,subgraphTable, inputTable, graphTable;
+    private boolean fileBased;
+    private String distanceEngine;
 
 
     public static void registerConfigEntries(ConfigurationParser cp) {
         cp.addDoubleOption("thd", "thdmin", "Minimum distance for scoring");
+        cp.addStringOption("dist", "distanceEngine", "Engine for subgraph distances: jvm (default, "
+                + "relative error below 0.012% for streets within 100 km east-west of the network center) or sql");
     }
 
     public DependencyCalculator(Configuration config) {
@@ -35,21 +46,24 @@ public class DependencyCalculator extends Configurable {
         subgraphTable = config.getStringOption("subgraphTable");
         inputTable = config.getStringOption("inputTable");
         graphTable = config.getStringOption("graphTable");
+        fileBased = DataSources.isFileBased(config);
+        distanceEngine = config.getStringOption("distanceEngine", "jvm");
 
 
     }
 
 
-    public List<DependencyRecord> run(List<Subgraph> spmGraphs) {
+    public List<DependencyRecord> run(List<Subgraph> spmGraphs, OutlierStore outliers) {
         //parse subgraphs
-        Map<Integer, List<Subgraph>> streetIdToSubgraph = parseSubGraphs(spmGraphs);
+        Map<Integer, List<Subgraph>> edgeToSubgraph = parseSubGraphs(spmGraphs);
         Map<Subgraph, Integer> subgraphToIndex = enumerateSubgraphs(spmGraphs);
 
-        int noSubgraphs = streetIdToSubgraph.keySet().size();
-        int numberOfTimePoints = getNumberOfTimePoints();
+        int noSubgraphs = spmGraphs.size();
+        //the store holds every time point of the outlier table
+        int numberOfTimePoints = fileBased ? outliers.size() : Math.max(getNumberOfTimePoints(), outliers.size());
 
         int[][] occurenceMatrix = new int[noSubgraphs][numberOfTimePoints];
-        Set<Pair<Subgraph, Subgraph>> candidates = populateOccurceMatrix(occurenceMatrix, streetIdToSubgraph, subgraphToIndex);
+        Set<Pair<Subgraph, Subgraph>> candidates = populateOccurceMatrix(occurenceMatrix, outliers, edgeToSubgraph, subgraphToIndex);
 
         //calculate pairwise dependency
 
@@ -58,12 +72,19 @@ public class DependencyCalculator extends Configurable {
         ProgressBar pb = new ProgressBar("Computing Scores", candidates.size());
         pb.start();
 
-        PostgreDB db = new PostgreDB(config);
+        SubgraphDistanceEngine engine = createDistanceEngine(spmGraphs);
+        PostgreDB db = (engine == null) ? new PostgreDB(config) : null;
         candidates.stream().parallel().forEach(cand -> {
             Subgraph left = cand.getLeft();
             Subgraph right = cand.getRight();
 
-            double distance=calculateDistance(left, right, db);
+            double distance;
+            if (engine != null) {
+                //pairs closer than th_d are rejected without computing their distance
+                distance = engine.isWithinDistance(left, right, Math.nextDown(th_d)) ? -1 : engine.distance(left, right);
+            } else {
+                distance = calculateDistance(left, right, db);
+            }
 
             if (distance >= th_d) {
                 int leftIndex = subgraphToIndex.get(cand.getLeft());
@@ -86,17 +107,17 @@ public class DependencyCalculator extends Configurable {
 
 
     private  Map<Integer, List<Subgraph>>  parseSubGraphs(List<Subgraph> spmGraphs) {
-        Map<Integer, List<Subgraph>> streetIdToSubgraph = new HashMap<>();
+        Map<Integer, List<Subgraph>> edgeToSubgraph = new HashMap<>();
 
         spmGraphs.stream().forEach(sg -> {
             for (LabeledDefaultEdge e: sg) {
-                if (!streetIdToSubgraph.containsKey(e.label)) {
-                    streetIdToSubgraph.put(e.label, new ArrayList<>());
+                if (!edgeToSubgraph.containsKey(e.index)) {
+                    edgeToSubgraph.put(e.index, new ArrayList<>());
                 }
-                streetIdToSubgraph.get(e.label).add(sg);
+                edgeToSubgraph.get(e.index).add(sg);
             }
         });
-        return  streetIdToSubgraph;
+        return  edgeToSubgraph;
     }
 
     private Map<Subgraph, Integer> enumerateSubgraphs(List<Subgraph> spmGraphs) {
@@ -132,60 +153,29 @@ public class DependencyCalculator extends Configurable {
     }
 
     private Set<Pair<Subgraph, Subgraph>> populateOccurceMatrix(int[][] occurenceMatrix,
-                                                                Map<Integer, List<Subgraph>> streetIdToSubgraph,
+                                                                OutlierStore outliers,
+                                                                Map<Integer, List<Subgraph>> edgeToSubgraph,
                                                                 Map<Subgraph, Integer> subgraphToIndex) {
         Set<Pair<Subgraph, Subgraph>> candidates = new HashSet<>();
 
-        String columnsHead = "select ot.id,"+timeColumn;
-
-        String query =  " from "+outlierTable+" ot\n" +
-                        "join "+subgraphTable+" sg on (ot.id = sg.id)\n" +
-                        "where sg.name='"+subgraphName+"'\n";
-
-        String orderFooter = "order by "+timeColumn+" asc;";
-
-
-        PostgreDB db = new PostgreDB(config);
-        try(Connection con= db.getConnection();
-            Statement stmt=con.createStatement();
-            ResultSet rs = stmt.executeQuery(columnsHead+query+orderFooter)) {
-
-
-            long currentTime = -1;
-            int currentTimeIndex = -1;
+        for (int t = 0; t < outliers.size(); ++t) {
             Set<Subgraph> currentAffected = new HashSet<>();
 
-            while(rs.next()) {
-                long t = rs.getTimestamp(2).getTime();
-                int streetId = rs.getInt(1);
-
-
-                //reached a new time point
-                if (t != currentTime) {
-                    //increment time
-                    ++currentTimeIndex;
-                    currentTime = t;
-                    //save candidates
-                    addPairsToCandidateSet(candidates, currentAffected);
-                    currentAffected = new HashSet<>();
-                }
+            for (int pos = outliers.start(t); pos < outliers.end(t); ++pos) {
+                List<Subgraph> affected = edgeToSubgraph.get(outliers.edgeAt(pos));
 
                 //ignore isolated outliers
-                if (! streetIdToSubgraph.containsKey(streetId)) {
+                if (affected == null) {
                     continue;
                 }
 
-                for (Subgraph sg: streetIdToSubgraph.get(streetId)) {
+                for (Subgraph sg: affected) {
                     currentAffected.add(sg);
                     int subgraphIndex = subgraphToIndex.get(sg);
-                    occurenceMatrix[subgraphIndex][currentTimeIndex]=1;
+                    occurenceMatrix[subgraphIndex][t]=1;
                 }
             }
-            //save last candidates
             addPairsToCandidateSet(candidates, currentAffected);
-        } catch (SQLException e) {
-            e.printStackTrace();
-            System.exit(2);
         }
         return candidates;
     }
@@ -206,6 +196,26 @@ public class DependencyCalculator extends Configurable {
         }
     }
 
+    /**
+     * Returns the in memory distance engine, or null if distances are queried from the database
+     */
+    private SubgraphDistanceEngine createDistanceEngine(List<Subgraph> spmGraphs) {
+        if (!fileBased && distanceEngine.equals("sql")) {
+            return null;
+        }
+        try {
+            return SubgraphDistanceEngine.create(spmGraphs);
+        } catch (FactoryException | TransformException e) {
+            if (fileBased) {
+                e.printStackTrace();
+                System.exit(5);
+            }
+            Logger.getLogger(DependencyCalculator.class.getName()).log(Level.WARNING,
+                    "Cannot project the street geometries, falling back to sql distances", e);
+            return null;
+        }
+    }
+
     private double calculateDistance(Subgraph left, Subgraph right, PostgreDB db) {
         String query = "select distances.c1, distances.c2, min(distances.dist)\n" +
                 "from\n" +
@@ -0,0 +1,232 @@
+package de.l3s.st_discovery.model;
+
+import de.l3s.st_discovery.graph.Subgraph;
+import de.l3s.st_discovery.model.regiongrowing.LabeledDefaultEdge;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Merge hierarchy of spatial merging with best-first agglomeration.
+ *
+ * The leaves are the regions of region growing. Merge i joins the subgraph of slot rhs[i] into the subgraph of
+ * slot lhs[i] at similarity[i]. Best-first agglomeration always merges the most similar pair, independent of the
+ * threshold, so the merges for any threshold above {@link #getMinSimilarity()} are the prefix of merges up to the
+ * first one below the threshold.
+ *
+ * A hierarchy is only reused for exactly the leaves it was built from, the fingerprint only detects corrupt files.
+ *
+ * File layout (big endian):
+ * <pre>
+ * header      magic, version (int), leafFingerprint (long), minSimilarity (double), leafCount, mergeCount (int)
+ * leafOffsets (leafCount + 1) x int
+ * leafEdges   dense edge indices
+ * merges      mergeCount x (lhs, rhs (int), similarity (double))
+ * </pre>
+ */
+public class MergeDendrogram {
+
+    private static final int MAGIC = 0x5354444E;
+    private static final int VERSION = 1;
+
+    private final int[][] leafEdges;
+    private final double minSimilarity;
+    private int mergeCount;
+    private int[] lhs, rhs;
+    private double[] similarities;
+
+    MergeDendrogram(int[][] leafEdges, double minSimilarity) {
+        this.leafEdges = leafEdges;
+        this.minSimilarity = minSimilarity;
+        lhs = new int[16];
+        rhs = new int[16];
+        similarities = new double[16];
+    }
+
+    void addMerge(int lhsSlot, int rhsSlot, double similarity) {
+        if (mergeCount == lhs.length) {
+            lhs = Arrays.copyOf(lhs, mergeCount * 2);
+            rhs = Arrays.copyOf(rhs, mergeCount * 2);
+            similarities = Arrays.copyOf(similarities, mergeCount * 2);
+        }
+        lhs[mergeCount] = lhsSlot;
+        rhs[mergeCount] = rhsSlot;
+        similarities[mergeCount++] = similarity;
+    }
+
+    /**
+     * Returns the smallest threshold the hierarchy can be cut at
+     */
+    public double getMinSimilarity() {
+        return minSimilarity;
+    }
+
+    public int getMergeCount() {
+        return mergeCount;
+    }
+
+    /**
+     * Returns the dense edge indices of the leaves in slot order
+     */
+    public static int[][] leafEdges(List<Subgraph> leaves) {
+        int[][] result = new int[leaves.size()][];
+        for (int slot = 0; slot < leaves.size(); ++slot) {
+            Subgraph sg = leaves.get(slot);
+            result[slot] = new int[sg.size()];
+            for (int i = 0; i < sg.size(); ++i) {
+                result[slot][i] = sg.getEdgeIndex(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Order dependent fingerprint of the leaves, a hierarchy only applies to the leaves it was built from
+     */
+    public static long fingerprint(int[][] leafEdges) {
+        long hash = 0xCBF29CE484222325L;
+        for (int[] leaf : leafEdges) {
+            hash = (hash ^ leaf.length) * 0x100000001B3L;
+            for (int edge : leaf) {
+                hash = (hash ^ edge) * 0x100000001B3L;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Returns true if the hierarchy was built from exactly these leaves
+     */
+    public boolean matches(int[][] leafEdges) {
+        return Arrays.deepEquals(leafEdges, this.leafEdges);
+    }
+
+    /**
+     * Returns the merged subgraphs at a similarity threshold
+     * @param threshold Similarity threshold, at least {@link #getMinSimilarity()}
+     * @param edges Edges by dense edge index, contains at least the edges of the leaves
+     */
+    public List<Subgraph> cut(double threshold, LabeledDefaultEdge[] edges) {
+        if (threshold < minSimilarity) {
+            throw new IllegalArgumentException("The merge hierarchy was built down to similarity " + minSimilarity);
+        }
+        int[] mergedInto = new int[leafEdges.length];
+        Arrays.fill(mergedInto, -1);
+        for (int m = 0; m < mergeCount && similarities[m] >= threshold; ++m) {
+            mergedInto[rhs[m]] = lhs[m];
+        }
+
+        List<Subgraph> result = new ArrayList<>();
+        Subgraph[] bySlot = new Subgraph[leafEdges.length];
+        for (int slot = 0; slot < leafEdges.length; ++slot) {
+            int root = slot;
+            while (mergedInto[root] >= 0) {
+                root = mergedInto[root];
+            }
+            if (root != slot) {
+                mergedInto[slot] = root;
+            }
+            if (bySlot[root] == null) {
+                bySlot[root] = new Subgraph();
+            }
+            for (int edge : leafEdges[slot]) {
+                bySlot[root].addEdge(edges[edge]);
+            }
+        }
+        for (Subgraph sg : bySlot) {
+            if (sg != null) {
+                result.add(sg);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the hierarchy to file. The file is replaced atomically once it is complete.
+     */
+    public void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 20))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint(leafEdges));
+            out.writeDouble(minSimilarity);
+            out.writeInt(leafEdges.length);
+            out.writeInt(mergeCount);
+            int offset = 0;
+            for (int[] leaf : leafEdges) {
+                out.writeInt(offset);
+                offset += leaf.length;
+            }
+            out.writeInt(offset);
+            for (int[] leaf : leafEdges) {
+                for (int edge : leaf) {
+                    out.writeInt(edge);
+                }
+            }
+            for (int m = 0; m < mergeCount; ++m) {
+                out.writeInt(lhs[m]);
+                out.writeInt(rhs[m]);
+                out.writeDouble(similarities[m]);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static MergeDendrogram read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 20))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a merge hierarchy: " + file);
+            if (in.readInt() != VERSION) throw new IOException("Unsupported merge hierarchy version: " + file);
+            long fingerprint = in.readLong();
+            double minSimilarity = in.readDouble();
+            int leafCount = in.readInt();
+            int mergeCount = in.readInt();
+
+            if (leafCount < 0 || mergeCount < 0 || mergeCount >= Math.max(1, leafCount)) {
+                throw new IOException("Corrupt merge hierarchy " + file);
+            }
+            int[] offsets = new int[leafCount + 1];
+            for (int i = 0; i <= leafCount; ++i) {
+                offsets[i] = in.readInt();
+                if (offsets[i] < ((i == 0) ? 0 : offsets[i - 1])) {
+                    throw new IOException("Corrupt merge hierarchy " + file);
+                }
+            }
+            int[][] leafEdges = new int[leafCount][];
+            for (int slot = 0; slot < leafCount; ++slot) {
+                leafEdges[slot] = new int[offsets[slot + 1] - offsets[slot]];
+                for (int i = 0; i < leafEdges[slot].length; ++i) {
+                    leafEdges[slot][i] = in.readInt();
+                }
+            }
+            if (fingerprint(leafEdges) != fingerprint) {
+                throw new IOException("Corrupt merge hierarchy " + file);
+            }
+
+            //every merge joins two slots that were not merged away before
+            MergeDendrogram dendrogram = new MergeDendrogram(leafEdges, minSimilarity);
+            boolean[] mergedAway = new boolean[leafCount];
+            for (int m = 0; m < mergeCount; ++m) {
+                int lhs = in.readInt();
+                int rhs = in.readInt();
+                double similarity = in.readDouble();
+                if (lhs < 0 || rhs < 0 || lhs >= leafCount || rhs >= leafCount || lhs == rhs
+                        || mergedAway[lhs] || mergedAway[rhs] || !(similarity >= minSimilarity)) {
+                    throw new IOException("Corrupt merge hierarchy " + file);
+                }
+                mergedAway[rhs] = true;
+                dendrogram.addMerge(lhs, rhs, similarity);
+            }
+            if (in.read() != -1) {
+                throw new IOException("Corrupt merge hierarchy " + file);
+            }
+            return dendrogram;
+        } catch (EOFException e) {
+            throw new IOException("Truncated merge hierarchy " + file, e);
+        }
+    }
+}
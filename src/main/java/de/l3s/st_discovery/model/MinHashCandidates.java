@@ -0,0 +1,181 @@
+package de.l3s.st_discovery.model;
+
+import de.l3s.st_discovery.graph.Subgraph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Candidate pairs of subgraphs from MinHash signatures and LSH banding.
+ *
+ * The signature of a subgraph holds the minimum of each of n hash functions over its edge indices. Two subgraphs
+ * with Jaccard similarity J agree on a signature entry with probability J. The signature is cut into b bands of r
+ * rows and two subgraphs become candidates if they agree on a whole band, which happens with probability
+ * 1 - (1 - J^r)^b. r is chosen once, as large as possible while a pair at the similarity threshold is still found
+ * with probability {@link #TARGET_RECALL}. The probability only depends on the similarity of a pair, not on the
+ * sizes of its subgraphs.
+ *
+ * Spatial merging probes the bands once, for the first merge iteration. Later iterations score the pairs of the
+ * merged subgraphs exactly and never probe the bands again, so the recall is a single-shot bound: every pair of
+ * input subgraphs reaching the threshold is a candidate with probability at least {@link #TARGET_RECALL}, and a
+ * missed pair is never merged directly. Its subgraphs can still end up together if one of them is merged with a
+ * third subgraph that then reaches the threshold with the other.
+ */
+public class MinHashCandidates {
+
+    static final double TARGET_RECALL = 0.95;
+    private static final long SEED = 0x5EED5EEDL;
+
+    private final int signatureSize;
+    private final int bands, rows;
+    private final long[] seeds;
+    private int[][] signatures;
+
+    /**
+     * @param signatureSize Number of hash functions
+     * @param threshold Jaccard similarity the banding is tuned for
+     */
+    public MinHashCandidates(int signatureSize, double threshold) {
+        if (signatureSize < 1) {
+            throw new IllegalArgumentException("The signature needs at least one hash function");
+        }
+        this.signatureSize = signatureSize;
+        int r = signatureSize;
+        while (r > 1 && detectionProbability(threshold, r, signatureSize / r) < TARGET_RECALL) {
+            --r;
+        }
+        rows = r;
+        bands = signatureSize / r;
+
+        SplittableRandom random = new SplittableRandom(SEED);
+        seeds = new long[signatureSize];
+        for (int k = 0; k < signatureSize; ++k) {
+            seeds[k] = random.nextLong();
+        }
+        signatures = new int[0][];
+    }
+
+    /**
+     * Probability that a pair with the given similarity shares at least one band
+     */
+    static double detectionProbability(double similarity, int rows, int bands) {
+        return 1.0 - Math.pow(1.0 - Math.pow(similarity, rows), bands);
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Computes the signatures of all subgraphs
+     * @param subgraphs Subgraphs by slot, empty slots are null
+     */
+    public void index(List<Subgraph> subgraphs) {
+        signatures = new int[subgraphs.size()][];
+        IntStream.range(0, subgraphs.size()).parallel().forEach(slot -> {
+            Subgraph sg = subgraphs.get(slot);
+            if (sg == null || sg.size() == 0) return;
+
+            int[] signature = new int[signatureSize];
+            Arrays.fill(signature, Integer.MAX_VALUE);
+            for (int i = 0; i < sg.size(); ++i) {
+                int edge = sg.getEdgeIndex(i);
+                for (int k = 0; k < signatureSize; ++k) {
+                    signature[k] = Math.min(signature[k], hash(edge, seeds[k]));
+                }
+            }
+            signatures[slot] = signature;
+        });
+    }
+
+    /**
+     * Returns the pairs that agree on at least one band
+     * @return Sorted, distinct pairs encoded as (lower slot &lt;&lt; 32) | higher slot
+     */
+    public long[] candidates() {
+        long[][] perBand = new long[bands][];
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            //bucket hash in the upper and slot in the lower half, sorting groups the buckets
+            long[] keys = new long[signatures.length];
+            int count = 0;
+            for (int slot = 0; slot < signatures.length; ++slot) {
+                if (signatures[slot] == null) continue;
+                keys[count++] = (((long) bandHash(signatures[slot], band)) << 32) | slot;
+            }
+            Arrays.sort(keys, 0, count);
+
+            long[] pairs = new long[16];
+            int pairCount = 0;
+            for (int start = 0, end; start < count; start = end) {
+                end = start + 1;
+                while (end < count && (keys[end] >>> 32) == (keys[start] >>> 32)) {
+                    ++end;
+                }
+                for (int i = start; i < end; ++i) {
+                    for (int j = i + 1; j < end; ++j) {
+                        if (pairCount == pairs.length) {
+                            pairs = Arrays.copyOf(pairs, pairCount * 2);
+                        }
+                        //slots are ascending within a bucket
+                        pairs[pairCount++] = (keys[i] << 32) | (keys[j] & 0xFFFFFFFFL);
+                    }
+                }
+            }
+            perBand[band] = Arrays.copyOf(pairs, pairCount);
+        });
+
+        return distinct(perBand);
+    }
+
+    /**
+     * Concatenates, sorts and deduplicates pair arrays
+     */
+    static long[] distinct(long[]... parts) {
+        int total = 0;
+        for (long[] part : parts) {
+            total += part.length;
+        }
+        long[] result = new long[total];
+        int pos = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, result, pos, part.length);
+            pos += part.length;
+        }
+        Arrays.parallelSort(result);
+
+        int distinct = 0;
+        for (int i = 0; i < total; ++i) {
+            if (distinct == 0 || result[distinct - 1] != result[i]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, distinct);
+    }
+
+    private int bandHash(int[] signature, int band) {
+        long hash = band;
+        for (int k = band * rows; k < (band + 1) * rows; ++k) {
+            hash = mix(hash * 31 + signature[k]);
+        }
+        return (int) hash;
+    }
+
+    private static int hash(int edge, long seed) {
+        return (int) (mix(edge ^ seed) >>> 33);
+    }
+
+    /**
+     * Finalizer of SplitMix64
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
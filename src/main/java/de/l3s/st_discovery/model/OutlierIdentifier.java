@@ -1,11 +1,21 @@
 package de.l3s.st_discovery.model;
 
+import de.l3s.st_discovery.model.outlier.HistoryOutlierIdentifier;
+import de.l3s.st_discovery.model.outlier.SpeedHistory;
+import de.l3s.st_discovery.source.DataSources;
+import de.l3s.st_discovery.source.TrafficDataSource;
 import de.l3s.st_discovery.util.configuration.Configurable;
 import de.l3s.st_discovery.util.configuration.Configuration;
 import de.l3s.st_discovery.util.configuration.ConfigurationParser;
 import de.l3s.st_discovery.util.db.PostgreDB;
+import de.l3s.st_discovery.util.misc.ArtifactCache;
 
+import java.io.IOException;
 import java.sql.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class OutlierIdentifier extends Configurable {
 
@@ -13,6 +23,8 @@ public class OutlierIdentifier extends Configurable {
     private String inputTable, outlierTable, speedColumn, idColumn, timeColumn;
 
     private String statsTable;
+    private String engine;
+    private boolean incremental;
 
 
     public static void registerConfigEntries(ConfigurationParser cp) {
@@ -21,6 +33,7 @@ public class OutlierIdentifier extends Configurable {
         cp.addStringOption("sc", "speedColumn", "Name of the column that stores speed records");
         cp.addStringOption("ic", "idColumn", "Name of the column that stores record ids");
         cp.addStringOption("tc", "timeColumn", "Name of the column that stores record timestamps");
+        cp.addStringOption("oe", "outlierEngine", "Engine for outlier identification, sql (default), jvm or history");
     }
 
     public OutlierIdentifier(Configuration config) {
@@ -30,6 +43,8 @@ public class OutlierIdentifier extends Configurable {
         speedColumn = config.getStringOption("speedColumn");
         idColumn = config.getStringOption("idColumn");
         timeColumn = config.getStringOption("timeColumn");
+        engine = config.getStringOption("outlierEngine", "sql");
+        incremental = config.getBooleanOption("incrementalOutliers", false);
 
         //drop schema of input table
         String statsPrefix;
@@ -43,7 +58,43 @@ public class OutlierIdentifier extends Configurable {
     }
 
 
-    public void run() throws SQLException {
+    public void run() throws SQLException, IOException {
+        run(new ArtifactCache());
+    }
+
+    /**
+     * Identifies the outliers with the configured engine
+     * @param artifacts Cache that keeps the speed history of the history engine between configurations
+     */
+    public void run(ArtifactCache artifacts) throws SQLException, IOException {
+        if (DataSources.isFileBased(config)) {
+            if (!engine.equals("history") || incremental) {
+                Logger.getLogger(OutlierIdentifier.class.getName()).log(Level.WARNING,
+                        "The file data source only supports the history outlier engine");
+            }
+            runHistory(artifacts);
+            return;
+        }
+        if (incremental && !engine.equals("jvm")) {
+            //the stored sketches of incremental runs are only maintained by the jvm engine
+            if (config.hasOption("outlierEngine")) {
+                throw new IllegalArgumentException("incrementalOutliers needs the jvm outlier engine, not " + engine);
+            }
+            Logger.getLogger(OutlierIdentifier.class.getName()).log(Level.INFO,
+                    "incrementalOutliers uses the jvm outlier engine instead of the default " + engine);
+        }
+        if (engine.equals("jvm") || incremental) {
+            new StreamingOutlierIdentifier(config).run();
+            return;
+        }
+        if (engine.equals("history")) {
+            runHistory(artifacts);
+            return;
+        }
+        if (!engine.equals("sql")) {
+            throw new IllegalArgumentException("Unknown outlier engine: " + engine);
+        }
+
         PostgreDB db = new PostgreDB(config);
 
         Connection con = db.getConnection();
@@ -52,6 +103,7 @@ public class OutlierIdentifier extends Configurable {
         Statement dropOutlierStmt = con.createStatement();
         dropOutlierStmt.execute(dropOutlierQuery);
         dropOutlierStmt.close();
+        StreamingOutlierIdentifier.resetWatermark(con, outlierTable);
 
         String dropStatsQuery = "DROP TABLE IF EXISTS "+statsTable+";";
         Statement dropStatsStmt = con.createStatement();
@@ -101,4 +153,12 @@ public class OutlierIdentifier extends Configurable {
         con.close();
         db.close();
     }
+
+    private void runHistory(ArtifactCache artifacts) throws SQLException, IOException {
+        TrafficDataSource source = DataSources.createTrafficDataSource(config);
+        List<String> inputs = Arrays.asList(config.getStringOption("dataSource", "postgres"),
+                DataSources.getDataDirectory(config).getPath(), inputTable, idColumn, speedColumn, timeColumn);
+        SpeedHistory history = artifacts.get("speed history", inputs, source::loadHistory);
+        new HistoryOutlierIdentifier(config, history).run(source);
+    }
 }
@@ -7,8 +7,6 @@ import de.l3s.st_discovery.util.configuration.Configuration;
 import de.l3s.st_discovery.util.configuration.ConfigurationParser;
 
 import de.l3s.st_discovery.util.misc.ProgressBar;
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.File;
 import java.io.FileWriter;
@@ -17,51 +15,101 @@ import java.io.PrintWriter;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 public class SpatialMerging extends Configurable {
 
     private boolean changed;
 
-    private Map<LabeledDefaultEdge, Set<Subgraph>> edgeToMergedSubgraph;
+    //merged subgraphs by slot, merged away subgraphs leave an empty slot until the registry is compacted
     private List<Subgraph> currentSubgraphs;
+    private int emptySlots;
+    //slots of the subgraphs containing an edge, indexed by the dense edge index of the compact graph
+    private int[][] edgeToMergedSubgraph;
+    private int[] postingSizes;
     private double thSim;
     private boolean writeSubgraphs;
+    //null if candidates are generated exactly
+    private MinHashCandidates minHash;
+    private boolean reportRecall;
+    //null if merging runs in rounds
+    private File dendrogramFile;
+    private double dendrogramMinSim;
 
     public SpatialMerging(Configuration config) {
         super(config);
         changed = true;
-        edgeToMergedSubgraph = new ConcurrentHashMap<>();
         currentSubgraphs = new ArrayList<>();
+        edgeToMergedSubgraph = new int[0][];
+        postingSizes = new int[0];
         thSim = config.getDoubleOption("thSim");
         writeSubgraphs = config.getBooleanOption("writeSubgraphs", false);
+        int minHashSize = config.getIntOption("minHashSize", 128);
+        if (minHashSize < 1) {
+            throw new IllegalArgumentException("minHashSize must be at least 1, not " + minHashSize);
+        }
+        if (config.getBooleanOption("lshCandidates", false)) {
+            minHash = new MinHashCandidates(minHashSize, thSim);
+        }
+        reportRecall = config.getBooleanOption("lshRecall", false);
+        if (config.hasOption("mergeDendrogram")) {
+            dendrogramFile = new File(config.getStringOption("mergeDendrogram"));
+        }
+        //by default the hierarchy covers the thresholds of all configurations of the run, see Application
+        String minThSim = config.getStringVariable("minThSim");
+        double defaultMinSim = (minThSim != null) ? Double.parseDouble(minThSim) : thSim;
+        dendrogramMinSim = Math.min(thSim, config.getDoubleOption("dendrogramMinSim", defaultMinSim));
     }
 
     public static void registerConfigEntries(ConfigurationParser cp) {
         cp.addDoubleOption("ths", "thSim", "Similarity threshold for spatial merging");
         cp.addBooleanOption("wsg", "writeSubgraphs", "Write the result of spatial merging to a file");
+        cp.addBooleanOption("lsh", "lshCandidates", "Generate merge candidates with MinHash and LSH banding instead of all pairs sharing an edge");
+        cp.addIntOption("mhs", "minHashSize", "Number of MinHash functions per subgraph (default 128)");
+        cp.addBooleanOption("lshr", "lshRecall", "Report the recall of the LSH candidates against the exact candidates");
+        cp.addStringOption("md", "mergeDendrogram", "File of a merge hierarchy that is cut at thSim, it is built if missing. "
+                + "The hierarchy merges the most similar pair first instead of merging in rounds, so the subgraphs can differ from the default merging");
+        cp.addDoubleOption("dms", "dendrogramMinSim", "Smallest similarity the merge hierarchy is built down to (default the smallest thSim of the run)");
     }
 
     public List<Subgraph> run(Map<Date, List<Subgraph>> rgGraphs) {
         currentSubgraphs = new ArrayList<>();
         parseRegionGrowingGraphs(rgGraphs);
+        if (dendrogramFile != null) {
+            currentSubgraphs = cutDendrogram();
+            if (writeSubgraphs) {
+                writeCurrentSubgraphsToFile();
+            }
+            return currentSubgraphs;
+        }
+        if (minHash != null) {
+            minHash.index(currentSubgraphs);
+            System.out.println("LSH with " + minHash.getBands() + " bands of " + minHash.getRows() + " rows");
+        }
+
+        //only the first iteration scores all candidates, later ones rescore the pairs of merged subgraphs
+        emptySlots = 0;
+        List<ScoredPair> scored = computeSimilarity(determineCandidates(), thSim);
 
         changed = true;
         int stepCounter = 1;
         while (changed) {
             System.out.println("Merging subgraphs iteration: " + stepCounter);
-            changed = false;
-
-            Set<Pair<Subgraph, Subgraph>> candidates = determineCandidates(currentSubgraphs);
 
-            Map<Pair<Subgraph, Subgraph>, Double> scores = computeSimilarity(candidates);
-
-            changed = mergeStep(scores);
+            int[] merged = mergeStep(scored);
+            changed = merged.length > 0;
+            if (emptySlots > currentSubgraphs.size() / 2) {
+                merged = compact(merged);
+            }
+            scored = rescore(merged);
             ++stepCounter;
         }
 
+        currentSubgraphs.removeIf(Objects::isNull);
         if (writeSubgraphs) {
             writeCurrentSubgraphsToFile();
         }
@@ -71,121 +119,528 @@ public class SpatialMerging extends Configurable {
 
 
     private void parseRegionGrowingGraphs(Map<Date, List<Subgraph>> rgGraphs) {
+        int edgeCount = 0;
         for (List<Subgraph> subgraphs : rgGraphs.values()) {
-            currentSubgraphs.addAll(subgraphs);
+            for (Subgraph sg : subgraphs) {
+                if (sg.size() > 0) {
+                    edgeCount = Math.max(edgeCount, sg.getEdgeIndex(sg.size() - 1) + 1);
+                }
+            }
+        }
+        edgeToMergedSubgraph = new int[edgeCount][];
+        postingSizes = new int[edgeCount];
 
+        for (List<Subgraph> subgraphs : rgGraphs.values()) {
             for (Subgraph sg : subgraphs) {
-                for (LabeledDefaultEdge edge : sg) {
-                    if (!edgeToMergedSubgraph.containsKey(edge)) {
-                        edgeToMergedSubgraph.put(edge, new HashSet<>());
-                    }
-                    edgeToMergedSubgraph.get(edge).add(sg);
+                int slot = currentSubgraphs.size();
+                currentSubgraphs.add(sg);
+                for (int i = 0; i < sg.size(); ++i) {
+                    addPosting(sg.getEdgeIndex(i), slot);
                 }
             }
         }
     }
 
+    private void addPosting(int edge, int slot) {
+        int[] postings = edgeToMergedSubgraph[edge];
+        if (postings == null) {
+            postings = new int[2];
+        } else if (postingSizes[edge] == postings.length) {
+            postings = Arrays.copyOf(postings, postings.length * 2);
+        }
+        postings[postingSizes[edge]++] = slot;
+        edgeToMergedSubgraph[edge] = postings;
+    }
 
-    private Set<Pair<Subgraph, Subgraph>> determineCandidates(List<Subgraph> graphs) {
-        Set<Pair<Subgraph, Subgraph>> result = Collections.synchronizedSet(new HashSet<>());
-        ProgressBar pb = new ProgressBar("Determining candidates", graphs.size());
-        pb.start();
-        //for (Subgraph sg: graphs) {
-        graphs.stream().parallel().forEach(sg -> {
-            Set<Subgraph> stepCandidates = new HashSet<>();
 
+    /**
+     * Cuts the merge hierarchy of the current subgraphs at thSim, the hierarchy is loaded from file or built
+     */
+    private List<Subgraph> cutDendrogram() {
+        int[][] leafEdges = MergeDendrogram.leafEdges(currentSubgraphs);
+        LabeledDefaultEdge[] edges = new LabeledDefaultEdge[edgeToMergedSubgraph.length];
+        for (Subgraph sg : currentSubgraphs) {
             for (LabeledDefaultEdge edge : sg) {
-                stepCandidates.addAll(edgeToMergedSubgraph.get(edge));
-                stepCandidates.remove(sg);
+                edges[edge.index] = edge;
+            }
+        }
+
+        MergeDendrogram dendrogram = null;
+        if (dendrogramFile.exists()) {
+            try {
+                dendrogram = MergeDendrogram.read(dendrogramFile);
+                if (!dendrogram.matches(leafEdges) || thSim < dendrogram.getMinSimilarity()) {
+                    dendrogram = null;
+                }
+            } catch (IOException e) {
+                Logger.getLogger(SpatialMerging.class.getName()).log(Level.WARNING,
+                        "Ignoring merge hierarchy: " + e.getMessage());
             }
+        }
+        if (dendrogram == null) {
+            dendrogram = buildDendrogram(leafEdges);
+            try {
+                dendrogram.write(dendrogramFile);
+            } catch (IOException e) {
+                Logger.getLogger(SpatialMerging.class.getName()).log(Level.SEVERE, null, e);
+            }
+        } else {
+            System.out.println("Loaded merge hierarchy from " + dendrogramFile);
+        }
+
+        List<Subgraph> result = dendrogram.cut(thSim, edges);
+        System.out.println("Cut merge hierarchy at " + thSim + ": " + result.size() + " subgraphs");
+        return result;
+    }
+
+    /**
+     * Merges the most similar pair of subgraphs until no pair reaches dendrogramMinSim. Merging rescores the
+     * pairs of the merged subgraph, older scores of its pairs are invalidated through slot versions.
+     */
+    private MergeDendrogram buildDendrogram(int[][] leafEdges) {
+        MergeDendrogram dendrogram = new MergeDendrogram(leafEdges, dendrogramMinSim);
+        int slots = currentSubgraphs.size();
+        int[] versions = new int[slots];
+        PriorityQueue<VersionedPair> queue = new PriorityQueue<>();
+        //the hierarchy has to be exact for every threshold, so the candidates are not generated with LSH
+        for (ScoredPair p : computeSimilarity(determineExactCandidates(), dendrogramMinSim)) {
+            queue.add(new VersionedPair(p, 0, 0));
+        }
+
+        int[][] buffers = rescoreBuffers(slots);
+        while (!queue.isEmpty()) {
+            VersionedPair current = queue.poll();
+            int lhs = current.pair.lhs();
+            int rhs = current.pair.rhs();
+            if (versions[lhs] != current.lhsVersion || versions[rhs] != current.rhsVersion) continue;
+
+            dendrogram.addMerge(lhs, rhs, current.pair.score);
+            mergeInto(lhs, rhs);
+            ++versions[lhs];
+            ++versions[rhs];
+            rescoreSlot(lhs, buffers, null, dendrogramMinSim,
+                    p -> queue.add(new VersionedPair(p, versions[p.lhs()], versions[p.rhs()])));
+        }
+        System.out.println("Built merge hierarchy with " + dendrogram.getMergeCount() + " merges");
+        return dendrogram;
+    }
+
+    /**
+     * Scored pair with the versions of its slots when it was scored
+     */
+    private static class VersionedPair implements Comparable<VersionedPair> {
+        final ScoredPair pair;
+        final int lhsVersion, rhsVersion;
+
+        VersionedPair(ScoredPair pair, int lhsVersion, int rhsVersion) {
+            this.pair = pair;
+            this.lhsVersion = lhsVersion;
+            this.rhsVersion = rhsVersion;
+        }
+
+        @Override
+        public int compareTo(VersionedPair other) {
+            return pair.compareTo(other.pair);
+        }
+    }
+
+    /**
+     * Merges the subgraph of rhsSlot into the subgraph of lhsSlot
+     */
+    private void mergeInto(int lhsSlot, int rhsSlot) {
+        Subgraph lhs = currentSubgraphs.get(lhsSlot);
+        Subgraph rhs = currentSubgraphs.get(rhsSlot);
+
+        for (int i = 0; i < rhs.size(); ++i) {
+            int edge = rhs.getEdgeIndex(i);
+            int[] postings = edgeToMergedSubgraph[edge];
+            int size = postingSizes[edge];
+            boolean containsLhs = false;
+            for (int p = 0; p < size; ++p) {
+                containsLhs |= postings[p] == lhsSlot;
+            }
+            for (int p = 0; p < size; ++p) {
+                if (postings[p] == rhsSlot) {
+                    postings[p] = containsLhs ? postings[--size] : lhsSlot;
+                    break;
+                }
+            }
+            postingSizes[edge] = size;
+        }
+
+        lhs.addAll(rhs);
+        currentSubgraphs.set(rhsSlot, null);
+    }
+
+    /**
+     * Returns the candidate pairs, encoded as (lower slot &lt;&lt; 32) | higher slot
+     */
+    private long[] determineCandidates() {
+        if (minHash == null) {
+            return determineExactCandidates();
+        }
+
+        //subset pairs score 1.0 regardless of their Jaccard similarity, so they are probed exactly
+        long[] candidates = MinHashCandidates.distinct(minHash.candidates(), determineContainmentCandidates());
+        if (reportRecall) {
+            reportRecall(candidates, determineExactCandidates());
+        }
+        return candidates;
+    }
+
+    /**
+     * Prints the fraction of exact pairs reaching thSim that are among the candidates
+     * @param candidates Sorted candidates
+     */
+    private void reportRecall(long[] candidates, long[] exact) {
+        long relevant = IntStream.range(0, exact.length).parallel()
+                .filter(c -> similarity(exact[c]) >= thSim).count();
+        long found = IntStream.range(0, exact.length).parallel()
+                .filter(c -> similarity(exact[c]) >= thSim && Arrays.binarySearch(candidates, exact[c]) >= 0).count();
+        System.out.println("LSH candidates: " + candidates.length + " instead of " + exact.length
+                + ", recall " + found + "/" + relevant
+                + String.format(" (%.2f%%)", (relevant == 0) ? 100.0 : 100.0 * found / relevant));
+    }
+
+    /**
+     * Returns the pairs in which one subgraph contains the other. A superset contains the edge of the
+     * subset with the fewest postings, so only the subgraphs in that posting list are tested.
+     */
+    private long[] determineContainmentCandidates() {
+        long[][] perSlot = new long[currentSubgraphs.size()][];
+        IntStream.range(0, currentSubgraphs.size()).parallel().forEach(slot -> {
+            Subgraph sg = currentSubgraphs.get(slot);
+            perSlot[slot] = new long[0];
+            if (sg == null || sg.size() == 0) return;
+
+            int rarest = sg.getEdgeIndex(0);
+            for (int i = 1; i < sg.size(); ++i) {
+                if (postingSizes[sg.getEdgeIndex(i)] < postingSizes[rarest]) {
+                    rarest = sg.getEdgeIndex(i);
+                }
+            }
+            long[] pairs = new long[postingSizes[rarest]];
+            int count = 0;
+            for (int p = 0; p < postingSizes[rarest]; ++p) {
+                int other = edgeToMergedSubgraph[rarest][p];
+                if (other != slot && sg.isSubsetOf(currentSubgraphs.get(other))) {
+                    pairs[count++] = (((long) Math.min(slot, other)) << 32) | Math.max(slot, other);
+                }
+            }
+            perSlot[slot] = Arrays.copyOf(pairs, count);
+        });
+        return MinHashCandidates.distinct(perSlot);
+    }
 
-            for (Subgraph candidate : stepCandidates) {
-                Pair<Subgraph, Subgraph> current = new ImmutablePair<>(sg, candidate);
-                Pair<Subgraph, Subgraph> reversed = new ImmutablePair<>(candidate, sg);
+    /**
+     * Returns every pair of subgraphs that share an edge
+     */
+    private long[] determineExactCandidates() {
+        int slots = currentSubgraphs.size();
+        ThreadLocal<int[]> lastSeen = ThreadLocal.withInitial(() -> {
+            int[] seen = new int[slots];
+            Arrays.fill(seen, -1);
+            return seen;
+        });
 
-                if (!(result.contains(current) || result.contains(reversed))) {
-                    result.add(current);
+        ProgressBar pb = new ProgressBar("Determining candidates", slots);
+        pb.start();
+        long[][] perSlot = new long[slots][];
+        IntStream.range(0, slots).parallel().forEach(slot -> {
+            Subgraph sg = currentSubgraphs.get(slot);
+            if (sg == null) {
+                pb.step();
+                return;
+            }
+            int[] seen = lastSeen.get();
+            long[] pairs = new long[8];
+            int count = 0;
+            for (int i = 0; i < sg.size(); ++i) {
+                int edge = sg.getEdgeIndex(i);
+                int[] postings = edgeToMergedSubgraph[edge];
+                for (int p = 0; p < postingSizes[edge]; ++p) {
+                    int other = postings[p];
+                    //every pair is only emitted by its lower slot
+                    if (other <= slot || seen[other] == slot) continue;
+                    seen[other] = slot;
+                    if (count == pairs.length) {
+                        pairs = Arrays.copyOf(pairs, count * 2);
+                    }
+                    pairs[count++] = (((long) slot) << 32) | other;
                 }
             }
+            perSlot[slot] = Arrays.copyOf(pairs, count);
             pb.step();
         });
         pb.stop();
+
+        int total = 0;
+        for (long[] pairs : perSlot) {
+            if (pairs != null) total += pairs.length;
+        }
+        long[] result = new long[total];
+        int pos = 0;
+        for (long[] pairs : perSlot) {
+            if (pairs == null) continue;
+            System.arraycopy(pairs, 0, result, pos, pairs.length);
+            pos += pairs.length;
+        }
         return result;
     }
 
-    private Map<Pair<Subgraph, Subgraph>, Double> computeSimilarity(Set<Pair<Subgraph, Subgraph>> candidates) {
-        Map<Pair<Subgraph, Subgraph>, Double> result = new ConcurrentHashMap<>();
+    /**
+     * Candidate pair whose similarity reaches thSim, ordered by descending score and then by slots
+     */
+    private static class ScoredPair implements Comparable<ScoredPair> {
+        final long pair;
+        final double score;
 
-        ProgressBar pb = new ProgressBar("Computing similarites", candidates.size());
-        pb.start();
-        //for (Pair<Subgraph, Subgraph> current: candidates) {
-        candidates.stream().parallel().forEach(current -> {
-            Subgraph lhs = current.getLeft();
-            Subgraph rhs = current.getRight();
+        ScoredPair(long pair, double score) {
+            this.pair = pair;
+            this.score = score;
+        }
 
-            int shared = lhs.intersection(rhs).size();
-            int total = lhs.union(rhs).size();
+        int lhs() {
+            return (int) (pair >>> 32);
+        }
 
-            double score = ((double) shared) / ((double) total);
+        int rhs() {
+            return (int) pair;
+        }
 
-            if (lhs.isSubsetOf(rhs) || rhs.isSubsetOf(lhs)) {
-                score = 1.0;
-            }
+        @Override
+        public int compareTo(ScoredPair other) {
+            int cmp = Double.compare(other.score, score);
+            return (cmp != 0) ? cmp : Long.compare(pair, other.pair);
+        }
+    }
 
-            if (score >= thSim) result.put(current, score);
+    private List<ScoredPair> computeSimilarity(long[] candidates, double minScore) {
+        double[] scores = new double[candidates.length];
 
+        ProgressBar pb = new ProgressBar("Computing similarites", candidates.length);
+        pb.start();
+        IntStream.range(0, candidates.length).parallel().forEach(c -> {
+            scores[c] = similarity(candidates[c]);
             pb.step();
         });
         pb.stop();
-        return result;
+
+        List<ScoredPair> scored = new ArrayList<>();
+        for (int c = 0; c < candidates.length; ++c) {
+            if (scores[c] >= minScore) {
+                scored.add(new ScoredPair(candidates[c], scores[c]));
+            }
+        }
+        return scored;
     }
 
+    private double similarity(long pair) {
+        Subgraph lhs = currentSubgraphs.get((int) (pair >>> 32));
+        Subgraph rhs = currentSubgraphs.get((int) pair);
+        return similarity(lhs.size(), rhs.size(), lhs.intersectionSize(rhs));
+    }
 
-    private boolean mergeStep(Map<Pair<Subgraph, Subgraph>, Double> scores) {
-        Map<Pair<Subgraph, Subgraph>, Double> sortedCandiddates = scores.entrySet()
-                .stream()
-                .sorted(Map.Entry.<Pair<Subgraph, Subgraph>, Double>comparingByValue().reversed())
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new));
+    private static double similarity(int lhsSize, int rhsSize, int shared) {
+        //one subgraph contains the other
+        if (shared == lhsSize || shared == rhsSize) {
+            return 1.0;
+        }
+        return ((double) shared) / ((double) (lhsSize + rhsSize - shared));
+    }
 
-        AtomicBoolean mergeOccured = new AtomicBoolean(false);
-        Set<Subgraph> visited = Collections.synchronizedSet(new HashSet<>());
+    /**
+     * Scores the pairs of the merged subgraphs again. Pairs of two unchanged subgraphs keep their score and did
+     * not reach thSim, otherwise one of them would have been merged.
+     * @param merged Slots that absorbed another subgraph
+     */
+    private List<ScoredPair> rescore(int[] merged) {
+        int slots = currentSubgraphs.size();
+        boolean[] dirty = new boolean[slots];
+        for (int slot : merged) {
+            dirty[slot] = true;
+        }
+        ThreadLocal<int[][]> buffers = ThreadLocal.withInitial(() -> rescoreBuffers(slots));
 
-        ProgressBar pb = new ProgressBar("Merging graphs", sortedCandiddates.keySet().size());
-        pb.start();
+        List<ScoredPair> scored = Collections.synchronizedList(new ArrayList<>());
+        Arrays.stream(merged).parallel().forEach(slot -> rescoreSlot(slot, buffers.get(), dirty, thSim, scored::add));
+        return scored;
+    }
 
-        //for (Pair<Subgraph, Subgraph> current: sortedCandiddates.keySet()) {
-        sortedCandiddates.keySet().stream().forEach(current -> {
+    private static int[][] rescoreBuffers(int slots) {
+        //stamps, shared edges and touched slots, the last array holds the current stamp
+        return new int[][]{new int[slots], new int[slots], new int[slots], new int[1]};
+    }
 
-            Subgraph lhs = current.getLeft();
-            Subgraph rhs = current.getRight();
-            Double score = sortedCandiddates.get(current);
+    /**
+     * Scores the pairs of one subgraph. The subgraphs sharing an edge with it are counted through the postings of
+     * its edges, which yields the intersection sizes without further set operations.
+     * @param buffers Buffers from {@link #rescoreBuffers(int)}, reused by consecutive calls of one thread
+     * @param dirty Slots that are rescored as well, pairs of two of them are scored by the lower slot, or null
+     * @param minScore Smallest score of the returned pairs
+     */
+    private void rescoreSlot(int slot, int[][] buffers, boolean[] dirty, double minScore, Consumer<ScoredPair> out) {
+        int[] seen = buffers[0], shared = buffers[1], touched = buffers[2];
+        int stamp = ++buffers[3][0];
+        int touchedCount = 0;
+
+        Subgraph sg = currentSubgraphs.get(slot);
+        for (int i = 0; i < sg.size(); ++i) {
+            int edge = sg.getEdgeIndex(i);
+            for (int p = 0; p < postingSizes[edge]; ++p) {
+                int other = edgeToMergedSubgraph[edge][p];
+                if (other == slot || (dirty != null && dirty[other] && other < slot)) continue;
+                if (seen[other] != stamp) {
+                    seen[other] = stamp;
+                    shared[other] = 0;
+                    touched[touchedCount++] = other;
+                }
+                ++shared[other];
+            }
+        }
 
-            if (visited.contains(lhs) || visited.contains(rhs)) {
-                pb.step();
-                return;
+        for (int t = 0; t < touchedCount; ++t) {
+            int other = touched[t];
+            double score = similarity(sg.size(), currentSubgraphs.get(other).size(), shared[other]);
+            if (score >= minScore) {
+                out.accept(new ScoredPair((((long) Math.min(slot, other)) << 32) | Math.max(slot, other), score));
             }
+        }
+    }
 
-            if (score >= thSim) {
-                mergeStep(lhs, rhs);
-                mergeOccured.set(true);
-                visited.add(lhs);
-                visited.add(rhs);
+    /**
+     * Merges a matching of the scored pairs, so every subgraph takes part in at most one merge per iteration.
+     *
+     * The matching is built in rounds. In every round each subgraph picks its best remaining pair and pairs picked
+     * by both of their subgraphs are matched, then pairs touching a matched subgraph are dropped. With ties broken
+     * by slot this yields the same matching as merging greedily in descending score order, independent of the
+     * thread schedule. The matched merges are disjoint and are applied concurrently.
+     * @return Slots that absorbed another subgraph, ascending
+     */
+    private int[] mergeStep(List<ScoredPair> scored) {
+        ScoredPair[] remaining = scored.toArray(new ScoredPair[0]);
+        List<ScoredPair> matching = new ArrayList<>();
+        AtomicIntegerArray best = new AtomicIntegerArray(currentSubgraphs.size());
+        for (int slot = 0; slot < currentSubgraphs.size(); ++slot) {
+            best.set(slot, -1);
+        }
+
+        while (remaining.length > 0) {
+            ScoredPair[] round = remaining;
+            IntStream.range(0, round.length).parallel().forEach(i -> {
+                offerBest(best, round, round[i].lhs(), i);
+                offerBest(best, round, round[i].rhs(), i);
+            });
+            boolean[] matched = new boolean[currentSubgraphs.size()];
+            for (int i = 0; i < round.length; ++i) {
+                if (best.get(round[i].lhs()) == i && best.get(round[i].rhs()) == i) {
+                    matching.add(round[i]);
+                    matched[round[i].lhs()] = true;
+                    matched[round[i].rhs()] = true;
+                }
             }
+            IntStream.range(0, round.length).parallel().forEach(i -> {
+                best.set(round[i].lhs(), -1);
+                best.set(round[i].rhs(), -1);
+            });
+            remaining = Arrays.stream(round).parallel()
+                    .filter(p -> !matched[p.lhs()] && !matched[p.rhs()])
+                    .toArray(ScoredPair[]::new);
+        }
+
+        ProgressBar pb = new ProgressBar("Merging graphs", matching.size());
+        pb.start();
+        matching.parallelStream().forEach(p -> {
+            currentSubgraphs.get(p.lhs()).addAll(currentSubgraphs.get(p.rhs()));
             pb.step();
         });
         pb.stop();
-        return mergeOccured.get();
+        updatePostings(matching);
+
+        int[] merged = new int[matching.size()];
+        for (int i = 0; i < matching.size(); ++i) {
+            merged[i] = matching.get(i).lhs();
+            currentSubgraphs.set(matching.get(i).rhs(), null);
+        }
+        emptySlots += matching.size();
+        Arrays.sort(merged);
+        return merged;
     }
 
-    private void mergeStep(Subgraph lhs, Subgraph rhs) {
-        lhs.addAll(rhs);
+    /**
+     * Records pair i as the best pair of slot, unless the slot already has a better one
+     */
+    private static void offerBest(AtomicIntegerArray best, ScoredPair[] pairs, int slot, int i) {
+        while (true) {
+            int current = best.get(slot);
+            if (current >= 0 && pairs[current].compareTo(pairs[i]) <= 0) return;
+            if (best.compareAndSet(slot, current, i)) return;
+        }
+    }
 
-        for (LabeledDefaultEdge edge : rhs) {
-            boolean result = edgeToMergedSubgraph.get(edge).remove(rhs);
-            edgeToMergedSubgraph.get(edge).add(lhs);
+    /**
+     * Replaces the merged away subgraphs by the subgraphs they were merged into. Every affected posting list is
+     * rewritten by one thread.
+     */
+    private void updatePostings(List<ScoredPair> matching) {
+        int[] mergedInto = new int[currentSubgraphs.size()];
+        Arrays.fill(mergedInto, -1);
+        boolean[] affected = new boolean[edgeToMergedSubgraph.length];
+        for (ScoredPair p : matching) {
+            mergedInto[p.rhs()] = p.lhs();
+            Subgraph rhs = currentSubgraphs.get(p.rhs());
+            for (int i = 0; i < rhs.size(); ++i) {
+                affected[rhs.getEdgeIndex(i)] = true;
+            }
         }
 
-        currentSubgraphs.remove(rhs);
+        IntStream.range(0, affected.length).parallel().filter(edge -> affected[edge]).forEach(edge -> {
+            int[] postings = edgeToMergedSubgraph[edge];
+            int size = postingSizes[edge];
+            for (int p = 0; p < size; ++p) {
+                if (mergedInto[postings[p]] >= 0) {
+                    postings[p] = mergedInto[postings[p]];
+                }
+            }
+            Arrays.sort(postings, 0, size);
+            int distinct = 0;
+            for (int p = 0; p < size; ++p) {
+                if (distinct == 0 || postings[distinct - 1] != postings[p]) {
+                    postings[distinct++] = postings[p];
+                }
+            }
+            postingSizes[edge] = distinct;
+        });
+    }
+
+    /**
+     * Removes the empty slots of merged away subgraphs and renumbers the postings
+     * @param merged Slots that absorbed another subgraph in the last iteration
+     * @return The new slots of merged
+     */
+    private int[] compact(int[] merged) {
+        int[] newSlot = new int[currentSubgraphs.size()];
+        List<Subgraph> compacted = new ArrayList<>(currentSubgraphs.size() - emptySlots);
+        for (int slot = 0; slot < currentSubgraphs.size(); ++slot) {
+            Subgraph sg = currentSubgraphs.get(slot);
+            newSlot[slot] = compacted.size();
+            if (sg != null) {
+                compacted.add(sg);
+            }
+        }
+        IntStream.range(0, edgeToMergedSubgraph.length).parallel().forEach(edge -> {
+            for (int p = 0; p < postingSizes[edge]; ++p) {
+                edgeToMergedSubgraph[edge][p] = newSlot[edgeToMergedSubgraph[edge][p]];
+            }
+        });
+        currentSubgraphs = compacted;
+        emptySlots = 0;
+
+        int[] result = new int[merged.length];
+        for (int i = 0; i < merged.length; ++i) {
+            result[i] = newSlot[merged[i]];
+        }
+        return result;
     }
 
     private void writeCurrentSubgraphsToFile() {
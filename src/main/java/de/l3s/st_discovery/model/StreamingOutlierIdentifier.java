@@ -0,0 +1,355 @@
+package de.l3s.st_discovery.model;
+
+import de.l3s.st_discovery.output.OutlierWriter;
+import de.l3s.st_discovery.util.configuration.Configurable;
+import de.l3s.st_discovery.util.configuration.Configuration;
+import de.l3s.st_discovery.util.configuration.ConfigurationParser;
+import de.l3s.st_discovery.util.db.PartitionedLoader;
+import de.l3s.st_discovery.util.db.PostgreDB;
+import de.l3s.st_discovery.util.information.QuantileSketch;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Identifies outliers in the JVM instead of in the database.
+ *
+ * Uses the same rule as {@link OutlierIdentifier}: a record is an outlier if its speed is below
+ * q1 - 1.5 * (q3 - q1) of all records of the same street, day of week and time of day. The input table is
+ * streamed twice on several connections. The first pass reads ranges of street ids and fills one quantile sketch
+ * per group, each group is only updated by the connection reading its street. The second pass reads time ranges
+ * and compares each record against the bounds of its group. The outliers are bulk written to the outlier table
+ * with COPY.
+ *
+ * To bound memory the street ids can be processed in several rounds, each round streams the input for a
+ * range of ids.
+ *
+ * In incremental mode the sketches are stored in the table &lt;outlierTable&gt;_sketches and a watermark table
+ * records the last processed time stamp. Later runs only read records after the watermark, update the stored
+ * sketches and append the new outliers. Earlier records are not evaluated again against the updated bounds.
+ */
+public class StreamingOutlierIdentifier extends Configurable {
+
+    private static final int FETCH_SIZE = 10000;
+    private static final String WATERMARK_TABLE = "outlier_watermarks";
+
+    private String inputTable, outlierTable, speedColumn, idColumn, timeColumn;
+    private String sketchTable;
+    private int sketchSize, rounds;
+    private boolean incremental;
+
+    public static void registerConfigEntries(ConfigurationParser cp) {
+        cp.addIntOption("sks", "sketchSize", "Size of the quantile sketches of the jvm outlier engine (default 200)");
+        cp.addIntOption("or", "outlierRounds", "Number of id ranges the jvm outlier engine processes one after another (default 1)");
+        cp.addBooleanOption("io", "incrementalOutliers", "Only identify outliers in records after the last run, using stored sketches");
+    }
+
+    public StreamingOutlierIdentifier(Configuration config) {
+        super(config);
+        inputTable = config.getStringOption("inputTable");
+        outlierTable = config.getStringOption("outlierTable");
+        speedColumn = config.getStringOption("speedColumn");
+        idColumn = config.getStringOption("idColumn");
+        timeColumn = config.getStringOption("timeColumn");
+        sketchSize = config.getIntOption("sketchSize", 200);
+        rounds = Math.max(1, config.getIntOption("outlierRounds", 1));
+        incremental = config.getBooleanOption("incrementalOutliers", false);
+        sketchTable = outlierTable + "_sketches";
+    }
+
+    /**
+     * Street, day of week and time of day of a record
+     */
+    private static class GroupKey {
+        final long id;
+        final int dow;
+        final long tod;
+
+        GroupKey(long id, Timestamp time) {
+            LocalDateTime local = time.toLocalDateTime();
+            this.id = id;
+            this.dow = local.getDayOfWeek().getValue();
+            this.tod = local.toLocalTime().toNanoOfDay();
+        }
+
+        GroupKey(long id, int dow, long tod) {
+            this.id = id;
+            this.dow = dow;
+            this.tod = tod;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            GroupKey that = (GroupKey) o;
+            return id == that.id && dow == that.dow && tod == that.tod;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, dow, tod);
+        }
+    }
+
+    public void run() throws SQLException {
+        PartitionedLoader loader = new PartitionedLoader(config);
+        OutlierWriter writer = new OutlierWriter(config);
+
+        //all writes of a run are committed together with the watermark
+        PostgreDB db = new PostgreDB(config);
+        Connection con = db.getConnection();
+        con.setAutoCommit(false);
+        try {
+            createWatermarkTable(con);
+            Timestamp watermark = incremental ? fetchWatermark(con) : null;
+            if (watermark == null) {
+                writer.createTable(con);
+                if (incremental) {
+                    createSketchTable(con);
+                } else {
+                    resetWatermark(con, outlierTable);
+                }
+            }
+
+            String where = (watermark == null) ? " where true" : " where " + timeColumn + " > ?";
+            Object[] params = (watermark == null) ? new Object[0] : new Object[]{watermark};
+            Timestamp[] newRange = fetchTimeRange(con, where, params);
+            if (newRange == null) {
+                System.out.println("No new records in " + inputTable);
+                con.commit();
+                return;
+            }
+            where += " and " + timeColumn + " <= ?";
+            params = Arrays.copyOf(params, params.length + 1);
+            params[params.length - 1] = newRange[1];
+            if (watermark != null) {
+                System.out.println("Identifying outliers after " + watermark);
+            }
+
+            String from = "from " + inputTable + where;
+            long[] timeBounds = {newRange[0].getTime(), newRange[1].getTime()};
+            long[] idBounds = loader.fetchIdBounds(idColumn, from, params);
+            if (idBounds == null) {
+                System.out.println("No new records with a street id in " + inputTable);
+                con.commit();
+                return;
+            }
+
+            long[] idRanges = PartitionedLoader.split(idBounds[0], idBounds[1], rounds);
+            long outlierCount = 0;
+            for (int r = 0; r < idRanges.length - 1; ++r) {
+                String query = "select " + idColumn + ", " + timeColumn + ", " + speedColumn + " " + from +
+                        " and " + timeColumn + " >= ? and " + timeColumn + " < ?" +
+                        " and " + idColumn + " >= " + idRanges[r] + " and " + idColumn + " < " + idRanges[r + 1] + ";";
+
+                ConcurrentMap<GroupKey, QuantileSketch> sketches = (watermark != null)
+                        ? fetchSketches(con, idRanges[r], idRanges[r + 1])
+                        : new ConcurrentHashMap<>();
+                String sketchQuery = "select " + idColumn + ", " + timeColumn + ", " + speedColumn + " " + from +
+                        " and " + idColumn + " >= ? and " + idColumn + " < ?;";
+                Set<GroupKey> updated = updateSketches(loader, sketchQuery, idRanges[r], idRanges[r + 1], params, sketches);
+
+                Map<GroupKey, Double> bounds = new HashMap<>();
+                for (GroupKey key : updated) {
+                    QuantileSketch sketch = sketches.get(key);
+                    double q1 = sketch.quantile(0.25);
+                    double q3 = sketch.quantile(0.75);
+                    bounds.put(key, q1 - (1.5 * (q3 - q1)));
+                }
+                System.out.println("Computed outlier bounds for " + bounds.size() + " groups");
+
+                List<OutlierWriter.Rows> outliers = loader.loadTimeRanges(query, timeBounds[0], timeBounds[1], (rs, partition) -> {
+                    OutlierWriter.Rows result = new OutlierWriter.Rows();
+                    while (rs.next()) {
+                        long id = rs.getLong(1);
+                        Timestamp time = rs.getTimestamp(2);
+                        double speed = rs.getDouble(3);
+                        if (rs.wasNull() || time == null) continue;
+
+                        //compare at the precision of the sketches
+                        Double bound = bounds.get(new GroupKey(id, time));
+                        if (bound != null && (float) speed < bound) {
+                            result.add(id, time, speed);
+                        }
+                    }
+                    return result;
+                }, params);
+
+                outlierCount += writer.write(con, outliers);
+                if (incremental) {
+                    storeSketches(con, sketches, updated);
+                }
+            }
+
+            if (incremental) {
+                storeWatermark(con, newRange[1]);
+            }
+            con.commit();
+            System.out.println("Identified " + outlierCount + " outliers");
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.close();
+            db.close();
+        }
+    }
+
+    /**
+     * First pass, adds the records to the sketches of their groups. The id ranges of the partitions are disjoint,
+     * so every sketch is updated by one thread and no partial sketches are held.
+     * @param query Query with a lower and upper id bound parameter
+     * @param fromId First id
+     * @param toId Upper id bound (exclusive)
+     * @return The groups that received records
+     */
+    private Set<GroupKey> updateSketches(PartitionedLoader loader, String query, long fromId, long toId, Object[] params,
+                                         ConcurrentMap<GroupKey, QuantileSketch> sketches) throws SQLException {
+        List<Set<GroupKey>> partialKeys = loader.loadIdRanges(query, fromId, toId - 1, (rs, partition) -> {
+            Set<GroupKey> keys = new HashSet<>();
+            while (rs.next()) {
+                long id = rs.getLong(1);
+                Timestamp time = rs.getTimestamp(2);
+                float speed = rs.getFloat(3);
+                if (rs.wasNull() || time == null) continue;
+
+                GroupKey key = new GroupKey(id, time);
+                sketches.computeIfAbsent(key, k -> new QuantileSketch(sketchSize)).update(speed);
+                keys.add(key);
+            }
+            return keys;
+        }, params);
+
+        Set<GroupKey> updated = new HashSet<>();
+        for (Set<GroupKey> keys : partialKeys) {
+            updated.addAll(keys);
+        }
+        return updated;
+    }
+
+    /**
+     * Returns the first and last time stamp of the input records matching where, or null if there are none
+     */
+    private Timestamp[] fetchTimeRange(Connection con, String where, Object[] params) throws SQLException {
+        String query = "select min(" + timeColumn + "), max(" + timeColumn + ") from " + inputTable + where + ";";
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            for (int i = 0; i < params.length; ++i) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getTimestamp(1) == null) return null;
+                return new Timestamp[]{rs.getTimestamp(1), rs.getTimestamp(2)};
+            }
+        }
+    }
+
+    private void createSketchTable(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS " + sketchTable + ";");
+            stmt.execute("CREATE TABLE " + sketchTable + " (" +
+                    "id bigint, dow integer, tod bigint, sketch bytea, " +
+                    "primary key (id, dow, tod));");
+        }
+    }
+
+    private static void createWatermarkTable(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + WATERMARK_TABLE + " (" +
+                    "outlier_table text primary key, " +
+                    "input_table text, " +
+                    "columns text, " +
+                    "sketch_size integer, " +
+                    "watermark timestamp without time zone);");
+        }
+    }
+
+    /**
+     * Forgets the state of incremental runs, e.g. after the outlier table was rebuilt
+     */
+    public static void resetWatermark(Connection con, String outlierTable) throws SQLException {
+        createWatermarkTable(con);
+        try (PreparedStatement stmt = con.prepareStatement("DELETE FROM " + WATERMARK_TABLE + " WHERE outlier_table = ?;")) {
+            stmt.setString(1, outlierTable);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Returns the watermark of the outlier table, or null if there is no state for the current input and settings
+     */
+    private Timestamp fetchWatermark(Connection con) throws SQLException {
+        String query = "SELECT input_table, columns, sketch_size, watermark FROM " + WATERMARK_TABLE +
+                " WHERE outlier_table = ?;";
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            stmt.setString(1, outlierTable);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) return null;
+                if (!inputTable.equals(rs.getString(1)) || !getColumns().equals(rs.getString(2))
+                        || sketchSize != rs.getInt(3)) {
+                    System.out.println("Outlier table " + outlierTable + " was built with different settings, rebuilding it");
+                    return null;
+                }
+                return rs.getTimestamp(4);
+            }
+        }
+    }
+
+    private void storeWatermark(Connection con, Timestamp watermark) throws SQLException {
+        resetWatermark(con, outlierTable);
+        String query = "INSERT INTO " + WATERMARK_TABLE + " (outlier_table, input_table, columns, sketch_size, watermark) " +
+                "VALUES (?, ?, ?, ?, ?);";
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            stmt.setString(1, outlierTable);
+            stmt.setString(2, inputTable);
+            stmt.setString(3, getColumns());
+            stmt.setInt(4, sketchSize);
+            stmt.setTimestamp(5, watermark);
+            stmt.executeUpdate();
+        }
+    }
+
+    private String getColumns() {
+        return idColumn + "," + timeColumn + "," + speedColumn;
+    }
+
+    private ConcurrentMap<GroupKey, QuantileSketch> fetchSketches(Connection con, long fromId, long toId) throws SQLException {
+        ConcurrentMap<GroupKey, QuantileSketch> result = new ConcurrentHashMap<>();
+        String query = "SELECT id, dow, tod, sketch FROM " + sketchTable + " WHERE id >= ? AND id < ?;";
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            stmt.setLong(1, fromId);
+            stmt.setLong(2, toId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    result.put(new GroupKey(rs.getLong(1), rs.getInt(2), rs.getLong(3)),
+                            QuantileSketch.fromBytes(rs.getBytes(4)));
+                }
+            }
+        }
+        return result;
+    }
+
+    private void storeSketches(Connection con, Map<GroupKey, QuantileSketch> sketches,
+                               Set<GroupKey> updated) throws SQLException {
+        String query = "INSERT INTO " + sketchTable + " (id, dow, tod, sketch) VALUES (?, ?, ?, ?) " +
+                "ON CONFLICT (id, dow, tod) DO UPDATE SET sketch = excluded.sketch;";
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            int counter = 0;
+            for (GroupKey key : updated) {
+                stmt.setLong(1, key.id);
+                stmt.setInt(2, key.dow);
+                stmt.setLong(3, key.tod);
+                stmt.setBytes(4, sketches.get(key).toBytes());
+                stmt.addBatch();
+                if (++counter % 1000 == 0) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+    }
+}
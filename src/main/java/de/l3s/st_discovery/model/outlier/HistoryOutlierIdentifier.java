@@ -0,0 +1,77 @@
+package de.l3s.st_discovery.model.outlier;
+
+import de.l3s.st_discovery.output.OutlierWriter;
+import de.l3s.st_discovery.source.TrafficDataSource;
+import de.l3s.st_discovery.util.configuration.Configurable;
+import de.l3s.st_discovery.util.configuration.Configuration;
+import de.l3s.st_discovery.util.configuration.ConfigurationParser;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * Identifies outliers by scoring a {@link SpeedHistory} with the configured {@link OutlierDetector}
+ */
+public class HistoryOutlierIdentifier extends Configurable {
+
+    private static final int SEASONAL_HALF_WINDOW = 2;
+
+    private SpeedHistory history;
+    private String detector;
+    private double threshold;
+
+    public static void registerConfigEntries(ConfigurationParser cp) {
+        cp.addStringOption("od", "outlierDetector", "Detector of the history outlier engine: tukey (default), zscore, mad or seasonal");
+        cp.addDoubleOption("oth", "outlierThreshold", "Threshold of the outlier detector, defaults to 1.5 (tukey), 3 (zscore) and 3.5 (mad, seasonal)");
+    }
+
+    public HistoryOutlierIdentifier(Configuration config, SpeedHistory history) {
+        super(config);
+        this.history = history;
+        this.detector = config.getStringOption("outlierDetector", "tukey");
+        this.threshold = config.getDoubleOption("outlierThreshold", defaultThreshold(detector));
+    }
+
+    /**
+     * Returns the threshold of a detector if outlierThreshold is not set
+     */
+    public static double defaultThreshold(String detector) {
+        switch (detector) {
+            case "tukey":
+                return 1.5;
+            case "zscore":
+                return 3.0;
+            default:
+                return 3.5;
+        }
+    }
+
+    /**
+     * Returns a factory for detectors of the configured type
+     */
+    public Supplier<OutlierDetector> createDetectors() {
+        switch (detector) {
+            case "tukey":
+                return () -> new TukeyDetector(threshold);
+            case "zscore":
+                return () -> new ZScoreDetector(threshold);
+            case "mad":
+                return () -> new MadDetector(threshold);
+            case "seasonal":
+                return () -> new SeasonalResidualDetector(threshold, SEASONAL_HALF_WINDOW);
+            default:
+                throw new IllegalArgumentException("Unknown outlier detector: " + detector);
+        }
+    }
+
+    /**
+     * Scores the history and replaces the outliers stored in the source
+     */
+    public void run(TrafficDataSource source) throws SQLException, IOException {
+        OutlierWriter.Rows outliers = history.score(createDetectors());
+        System.out.println("Detector " + detector + " flagged " + outliers.size() + " of "
+                + history.getRecordCount() + " records");
+        source.writeOutliers(outliers);
+    }
+}
@@ -0,0 +1,35 @@
+package de.l3s.st_discovery.model.outlier;
+
+/**
+ * Speeds whose robust z-score (x - median) / (1.4826 * MAD) is below -threshold
+ */
+public class MadDetector implements OutlierDetector {
+
+    //scales the MAD to the standard deviation of normally distributed data
+    static final double MAD_SCALE = 1.4826;
+
+    private final double threshold;
+    private final Statistics statistics = new Statistics();
+
+    public MadDetector(double threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public int detect(double[] speeds, int from, int to, boolean[] outliers) {
+        int n = to - from;
+        if (n == 0) return 0;
+
+        double[] buffer = statistics.copy(speeds, from, to);
+        double median = Statistics.median(buffer, n);
+        double mad = Statistics.medianAbsoluteDeviation(buffer, n, median);
+        double fence = median - (threshold * MAD_SCALE * mad);
+
+        int count = 0;
+        for (int i = from; i < to; ++i) {
+            outliers[i] = mad > 0 && speeds[i] < fence;
+            if (outliers[i]) ++count;
+        }
+        return count;
+    }
+}
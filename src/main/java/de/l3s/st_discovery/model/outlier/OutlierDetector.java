@@ -0,0 +1,20 @@
+package de.l3s.st_discovery.model.outlier;
+
+/**
+ * Flags unusually low speeds within the records of one street and time slot.
+ *
+ * Implementations evaluate a range of a primitive array and reuse internal buffers, so they do not allocate
+ * once the buffers reached the size of the largest group. Instances are therefore not thread safe.
+ */
+public interface OutlierDetector {
+
+    /**
+     * Evaluates the speeds of one group
+     * @param speeds Speed values, ordered by time within the group
+     * @param from First index of the group
+     * @param to Index after the last value of the group
+     * @param outliers Set to true at the index of every outlier, other entries are set to false
+     * @return Number of outliers in the group
+     */
+    int detect(double[] speeds, int from, int to, boolean[] outliers);
+}
@@ -0,0 +1,52 @@
+package de.l3s.st_discovery.model.outlier;
+
+/**
+ * Flags speeds that fall below the local level of their time slot.
+ *
+ * The values of a group are the weekly observations of one street, day of week and time of day. The level at
+ * each observation is the median of the surrounding window of observations, which follows slow changes such
+ * as seasons or road works. Residuals from the level are scored with the MAD rule.
+ */
+public class SeasonalResidualDetector implements OutlierDetector {
+
+    private final double threshold;
+    private final int halfWindow;
+    private final Statistics residuals = new Statistics();
+    private final Statistics window = new Statistics();
+
+    /**
+     * @param threshold Robust z-score below which residuals are outliers
+     * @param halfWindow Number of observations before and after each value that determine its level
+     */
+    public SeasonalResidualDetector(double threshold, int halfWindow) {
+        this.threshold = threshold;
+        this.halfWindow = halfWindow;
+    }
+
+    @Override
+    public int detect(double[] speeds, int from, int to, boolean[] outliers) {
+        int n = to - from;
+        if (n == 0) return 0;
+
+        double[] residual = residuals.buffer(n);
+        for (int i = from; i < to; ++i) {
+            int start = Math.max(from, i - halfWindow);
+            int end = Math.min(to, i + halfWindow + 1);
+            double[] values = window.copy(speeds, start, end);
+            residual[i - from] = speeds[i] - Statistics.median(values, end - start);
+        }
+
+        //the residuals are reordered by the median, so the fence is computed on a copy
+        double[] sorted = window.copy(residual, 0, n);
+        double median = Statistics.median(sorted, n);
+        double mad = Statistics.medianAbsoluteDeviation(sorted, n, median);
+        double fence = median - (threshold * MadDetector.MAD_SCALE * mad);
+
+        int count = 0;
+        for (int i = from; i < to; ++i) {
+            outliers[i] = mad > 0 && residual[i - from] < fence;
+            if (outliers[i]) ++count;
+        }
+        return count;
+    }
+}
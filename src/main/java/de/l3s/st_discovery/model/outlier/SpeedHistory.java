@@ -0,0 +1,193 @@
+package de.l3s.st_discovery.model.outlier;
+
+import de.l3s.st_discovery.output.OutlierWriter;
+import de.l3s.st_discovery.util.configuration.Configuration;
+import de.l3s.st_discovery.util.db.PartitionedLoader;
+import de.l3s.st_discovery.util.misc.LocalTimes;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Speed records of the input table held in memory, grouped by street, day of week and time of day.
+ *
+ * The records of group g are speeds[offsets[g]]..speeds[offsets[g+1]-1], ordered by time. A history is loaded
+ * once and can then be scored with any number of {@link OutlierDetector}s without querying the database.
+ * Times of day are grouped at millisecond precision.
+ */
+public class SpeedHistory {
+
+    private final long[] groupKeys;
+    private final int[] offsets;
+    private final long[] times;
+    private final double[] speeds;
+
+    private SpeedHistory(long[] groupKeys, int[] offsets, long[] times, double[] speeds) {
+        this.groupKeys = groupKeys;
+        this.offsets = offsets;
+        this.times = times;
+        this.speeds = speeds;
+    }
+
+    public int getGroupCount() {
+        return groupKeys.length;
+    }
+
+    public int getRecordCount() {
+        return speeds.length;
+    }
+
+    /**
+     * Packs street id, ISO day of week and millisecond of day into one key
+     */
+    static long groupKey(int id, long micros) {
+        long millisOfDay = LocalTimes.microOfDay(micros) / 1000L;
+        return (((long) id) << 32) | (((long) LocalTimes.dayOfWeek(micros)) << 27) | millisOfDay;
+    }
+
+    /**
+     * Records of one time range, in time order
+     */
+    public static class Part {
+        private int size;
+        private long[] keys = new long[1024];
+        private long[] times = new long[1024];
+        private double[] speeds = new double[1024];
+
+        /**
+         * @param id Street id
+         * @param micros Local time, see {@link LocalTimes}
+         * @param speed Speed
+         */
+        public void add(int id, long micros, double speed) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                times = Arrays.copyOf(times, size * 2);
+                speeds = Arrays.copyOf(speeds, size * 2);
+            }
+            keys[size] = groupKey(id, micros);
+            times[size] = micros;
+            speeds[size] = speed;
+            ++size;
+        }
+    }
+
+    /**
+     * Loads the speed records of the input table in parallel time ranges
+     */
+    public static SpeedHistory load(Configuration config) throws SQLException {
+        String inputTable = config.getStringOption("inputTable");
+        String idColumn = config.getStringOption("idColumn");
+        String speedColumn = config.getStringOption("speedColumn");
+        String timeColumn = config.getStringOption("timeColumn");
+
+        PartitionedLoader loader = new PartitionedLoader(config);
+        String from = "from " + inputTable;
+        long[] timeBounds = loader.fetchTimeBounds(timeColumn, from);
+        if (timeBounds == null) {
+            return new SpeedHistory(new long[0], new int[1], new long[0], new double[0]);
+        }
+
+        String query = "select " + idColumn + ", " + timeColumn + ", " + speedColumn + " " + from +
+                " where " + timeColumn + " >= ? and " + timeColumn + " < ? order by " + timeColumn + ";";
+        List<Part> parts = loader.loadTimeRanges(query, timeBounds[0], timeBounds[1], (rs, partition) -> {
+            Part part = new Part();
+            while (rs.next()) {
+                long id = rs.getLong(1);
+                Timestamp time = rs.getTimestamp(2);
+                double speed = rs.getDouble(3);
+                if (rs.wasNull() || time == null) continue;
+                if (id != (int) id) {
+                    throw new SQLException("Street id " + id + " exceeds the integer ids of the speed history");
+                }
+
+                part.add((int) id, LocalTimes.toMicros(time), speed);
+            }
+            return part;
+        });
+
+        return fromParts(parts);
+    }
+
+    /**
+     * Scatters the records into their groups
+     * @param parts Records, ordered by time within and across the parts
+     */
+    public static SpeedHistory fromParts(List<Part> parts) {
+        SpeedHistory history = group(parts);
+        System.out.println("Loaded " + history.getRecordCount() + " speed records in "
+                + history.getGroupCount() + " groups");
+        return history;
+    }
+
+    private static SpeedHistory group(List<Part> parts) {
+        int total = 0;
+        for (Part part : parts) {
+            total += part.size;
+        }
+
+        long[] keys = new long[total];
+        int pos = 0;
+        for (Part part : parts) {
+            System.arraycopy(part.keys, 0, keys, pos, part.size);
+            pos += part.size;
+        }
+        Arrays.parallelSort(keys);
+        int groups = 0;
+        for (int i = 0; i < total; ++i) {
+            if (groups == 0 || keys[groups - 1] != keys[i]) {
+                keys[groups++] = keys[i];
+            }
+        }
+        long[] groupKeys = Arrays.copyOf(keys, groups);
+
+        int[] offsets = new int[groups + 1];
+        for (Part part : parts) {
+            for (int i = 0; i < part.size; ++i) {
+                ++offsets[Arrays.binarySearch(groupKeys, part.keys[i]) + 1];
+            }
+        }
+        for (int g = 0; g < groups; ++g) {
+            offsets[g + 1] += offsets[g];
+        }
+
+        long[] times = new long[total];
+        double[] speeds = new double[total];
+        int[] next = Arrays.copyOf(offsets, groups);
+        for (Part part : parts) {
+            for (int i = 0; i < part.size; ++i) {
+                int target = next[Arrays.binarySearch(groupKeys, part.keys[i])]++;
+                times[target] = part.times[i];
+                speeds[target] = part.speeds[i];
+            }
+        }
+        return new SpeedHistory(groupKeys, offsets, times, speeds);
+    }
+
+    /**
+     * Scores all groups with a detector
+     * @param detectors Creates one detector per thread
+     * @return The outliers
+     */
+    public OutlierWriter.Rows score(Supplier<OutlierDetector> detectors) {
+        boolean[] outliers = new boolean[speeds.length];
+        ThreadLocal<OutlierDetector> detector = ThreadLocal.withInitial(detectors);
+        IntStream.range(0, groupKeys.length).parallel().forEach(g ->
+                detector.get().detect(speeds, offsets[g], offsets[g + 1], outliers));
+
+        OutlierWriter.Rows rows = new OutlierWriter.Rows();
+        for (int g = 0; g < groupKeys.length; ++g) {
+            int id = (int) (groupKeys[g] >>> 32);
+            for (int i = offsets[g]; i < offsets[g + 1]; ++i) {
+                if (outliers[i]) {
+                    rows.add(id, LocalTimes.toTimestamp(times[i]), speeds[i]);
+                }
+            }
+        }
+        return rows;
+    }
+}
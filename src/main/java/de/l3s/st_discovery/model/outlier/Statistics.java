@@ -0,0 +1,61 @@
+package de.l3s.st_discovery.model.outlier;
+
+import java.util.Arrays;
+
+/**
+ * Order statistics on reusable buffers
+ */
+class Statistics {
+
+    private double[] buffer = new double[64];
+
+    /**
+     * Returns a buffer holding a copy of values[from..to)
+     */
+    double[] copy(double[] values, int from, int to) {
+        int n = to - from;
+        if (buffer.length < n) {
+            buffer = new double[Math.max(n, buffer.length * 2)];
+        }
+        System.arraycopy(values, from, buffer, 0, n);
+        return buffer;
+    }
+
+    /**
+     * Returns the buffer, grown to hold at least n values
+     */
+    double[] buffer(int n) {
+        if (buffer.length < n) {
+            buffer = new double[Math.max(n, buffer.length * 2)];
+        }
+        return buffer;
+    }
+
+    /**
+     * Quantile of the first n sorted values with linear interpolation, like percentile_cont
+     */
+    static double quantile(double[] sorted, int n, double q) {
+        double rank = q * (n - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    /**
+     * Sorts the first n values of the buffer and returns their median
+     */
+    static double median(double[] values, int n) {
+        Arrays.sort(values, 0, n);
+        return quantile(values, n, 0.5);
+    }
+
+    /**
+     * Returns the median absolute deviation of the first n values from center, overwrites the values
+     */
+    static double medianAbsoluteDeviation(double[] values, int n, double center) {
+        for (int i = 0; i < n; ++i) {
+            values[i] = Math.abs(values[i] - center);
+        }
+        return median(values, n);
+    }
+}
@@ -0,0 +1,35 @@
+package de.l3s.st_discovery.model.outlier;
+
+import java.util.Arrays;
+
+/**
+ * Lower Tukey fence: speeds below q1 - k * (q3 - q1)
+ */
+public class TukeyDetector implements OutlierDetector {
+
+    private final double k;
+    private final Statistics statistics = new Statistics();
+
+    public TukeyDetector(double k) {
+        this.k = k;
+    }
+
+    @Override
+    public int detect(double[] speeds, int from, int to, boolean[] outliers) {
+        int n = to - from;
+        if (n == 0) return 0;
+
+        double[] sorted = statistics.copy(speeds, from, to);
+        Arrays.sort(sorted, 0, n);
+        double q1 = Statistics.quantile(sorted, n, 0.25);
+        double q3 = Statistics.quantile(sorted, n, 0.75);
+        double fence = q1 - (k * (q3 - q1));
+
+        int count = 0;
+        for (int i = from; i < to; ++i) {
+            outliers[i] = speeds[i] < fence;
+            if (outliers[i]) ++count;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,35 @@
+package de.l3s.st_discovery.model.outlier;
+
+/**
+ * Speeds more than threshold sample standard deviations below the mean
+ */
+public class ZScoreDetector implements OutlierDetector {
+
+    private final double threshold;
+
+    public ZScoreDetector(double threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public int detect(double[] speeds, int from, int to, boolean[] outliers) {
+        int n = to - from;
+        double sum = 0;
+        for (int i = from; i < to; ++i) {
+            sum += speeds[i];
+        }
+        double mean = sum / n;
+        double squares = 0;
+        for (int i = from; i < to; ++i) {
+            squares += (speeds[i] - mean) * (speeds[i] - mean);
+        }
+        double stddev = (n > 1) ? Math.sqrt(squares / (n - 1)) : 0;
+
+        int count = 0;
+        for (int i = from; i < to; ++i) {
+            outliers[i] = stddev > 0 && speeds[i] < mean - (threshold * stddev);
+            if (outliers[i]) ++count;
+        }
+        return count;
+    }
+}
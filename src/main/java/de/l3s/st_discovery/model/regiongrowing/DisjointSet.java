@@ -0,0 +1,60 @@
+package de.l3s.st_discovery.model.regiongrowing;
+
+/**
+ * Union-find over the elements 0..size-1 with path halving and union by size.
+ */
+public class DisjointSet {
+
+    private int[] parent;
+    private int[] size;
+
+    public DisjointSet(int size) {
+        this.parent = new int[size];
+        this.size = new int[size];
+        for (int i = 0; i < size; ++i) {
+            parent[i] = i;
+            this.size[i] = 1;
+        }
+    }
+
+    /**
+     * Returns the representative of the set containing element
+     */
+    public int find(int element) {
+        while (parent[element] != element) {
+            parent[element] = parent[parent[element]];
+            element = parent[element];
+        }
+        return element;
+    }
+
+    /**
+     * Merges the sets containing a and b
+     * @return true if the sets were different
+     */
+    public boolean union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) return false;
+
+        if (size[rootA] < size[rootB]) {
+            int tmp = rootA;
+            rootA = rootB;
+            rootB = tmp;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        return true;
+    }
+
+    /**
+     * Returns the number of elements in the set containing element
+     */
+    public int sizeOf(int element) {
+        return size[find(element)];
+    }
+
+    public int size() {
+        return parent.length;
+    }
+}
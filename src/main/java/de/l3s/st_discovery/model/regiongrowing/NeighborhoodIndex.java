@@ -0,0 +1,156 @@
+package de.l3s.st_discovery.model.regiongrowing;
+
+import de.l3s.st_discovery.graph.CompactGraph;
+import de.l3s.st_discovery.graph.HopDistanceEngine;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Stores for every vertex the vertices that can be reached within a bounded number of hops.
+ * Vertices are the dense vertex indices of a {@link CompactGraph}.
+ * Neighborhoods are kept in compressed sparse rows (sorted by vertex id, with the corresponding hop counts),
+ * so the memory grows with the size of the neighborhoods instead of the square of the number of vertices.
+ * The rows can either live on the heap or in a memory mapped cache file, see {@link NeighborhoodIndexFile}.
+ */
+public class NeighborhoodIndex {
+
+    private int maxHops;
+    private IntBuffer offsets;
+    private IntBuffer targets;
+    private ByteBuffer hops;
+
+    /**
+     * Creates an index from compressed sparse rows
+     * @param maxHops Maximum number of hops stored in the index
+     * @param offsets Row offsets, indexed by vertex (size vertexCount+1)
+     * @param targets Reachable vertices, sorted within each row
+     * @param hops Hop counts matching targets
+     */
+    public NeighborhoodIndex(int maxHops, IntBuffer offsets, IntBuffer targets, ByteBuffer hops) {
+        this.maxHops = maxHops;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.hops = hops;
+    }
+
+    /**
+     * Computes the index with a hop bounded multi-source breadth first search, see {@link HopDistanceEngine}.
+     * @param graph Street graph
+     * @param maxHops Maximum number of hops
+     * @return The index
+     */
+    public static NeighborhoodIndex build(CompactGraph graph, int maxHops) {
+        long[][] rows = new HopDistanceEngine(graph, maxHops).computeRows();
+        return fromRows(rows, maxHops);
+    }
+
+    /**
+     * Packs per-vertex rows of (vertex << 8 | hops) entries into compressed sparse rows
+     */
+    private static NeighborhoodIndex fromRows(long[][] rows, int maxHops) {
+        int[] offsets = new int[rows.length + 1];
+        long total = 0;
+        for (int v = 0; v < rows.length; ++v) {
+            offsets[v] = (int) total;
+            total += (rows[v] != null) ? rows[v].length : 0;
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Neighborhood index exceeds " + Integer.MAX_VALUE + " entries");
+            }
+        }
+        offsets[rows.length] = (int) total;
+
+        int[] targets = new int[(int) total];
+        byte[] hops = new byte[(int) total];
+        for (int v = 0; v < rows.length; ++v) {
+            if (rows[v] == null) continue;
+            int pos = offsets[v];
+            for (long entry : rows[v]) {
+                targets[pos] = (int) (entry >>> 8);
+                hops[pos] = (byte) (entry & 0xFF);
+                ++pos;
+            }
+            rows[v] = null;
+        }
+        return new NeighborhoodIndex(maxHops, IntBuffer.wrap(offsets), IntBuffer.wrap(targets), ByteBuffer.wrap(hops));
+    }
+
+    /**
+     * Returns the number of hops from source to target
+     * @return Hop count or Short.MAX_VALUE if target is not reachable within maxHops
+     */
+    public int distance(int source, int target) {
+        if (source < 0 || source >= getVertexCount()) {
+            return Short.MAX_VALUE;
+        }
+        int low = offsets.get(source);
+        int high = offsets.get(source + 1) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midVal = targets.get(mid);
+            if (midVal < target) {
+                low = mid + 1;
+            } else if (midVal > target) {
+                high = mid - 1;
+            } else {
+                return hops.get(mid);
+            }
+        }
+        return Short.MAX_VALUE;
+    }
+
+    public boolean isWithin(int source, int target, int tolerance) {
+        return distance(source, target) <= tolerance;
+    }
+
+    /**
+     * Returns the position of the first neighbor of source, use with {@link #neighborAt(int)}
+     */
+    public int neighborsStart(int source) {
+        if (source < 0 || source >= getVertexCount()) return 0;
+        return offsets.get(source);
+    }
+
+    /**
+     * Returns the position after the last neighbor of source
+     */
+    public int neighborsEnd(int source) {
+        if (source < 0 || source >= getVertexCount()) return 0;
+        return offsets.get(source + 1);
+    }
+
+    public int neighborAt(int position) {
+        return targets.get(position);
+    }
+
+    public int hopsAt(int position) {
+        return hops.get(position);
+    }
+
+    public int getMaxHops() {
+        return maxHops;
+    }
+
+    public int getVertexCount() {
+        return offsets.limit() - 1;
+    }
+
+    /**
+     * Returns the number of stored (source, target) pairs
+     */
+    public long size() {
+        return offsets.get(offsets.limit() - 1);
+    }
+
+    IntBuffer getOffsets() {
+        return offsets.duplicate();
+    }
+
+    IntBuffer getTargets() {
+        return targets.duplicate();
+    }
+
+    ByteBuffer getHops() {
+        return hops.duplicate();
+    }
+}
@@ -0,0 +1,152 @@
+package de.l3s.st_discovery.model.regiongrowing;
+
+import de.l3s.st_discovery.graph.CompactGraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary cache file for a {@link NeighborhoodIndex}.
+ *
+ * Layout (little endian):
+ * <pre>
+ * header   magic, version, maxHops, vertexCount, edgeCount (int), graph fingerprint, entries (long), padding to 64 bytes
+ * offsets  (vertexCount + 1) x int
+ * targets  entries x int
+ * hops     entries x byte
+ * </pre>
+ * The sections are opened with {@link FileChannel#map}, so a cached index is usable right after startup
+ * without parsing. A file that does not match the current graph or tolerance is rejected.
+ */
+public class NeighborhoodIndexFile {
+
+    private static final int MAGIC = 0x53544E49;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * Maps the index stored in file.
+     * @param file Cache file
+     * @param graph Graph the index must belong to
+     * @param maxHops Expected tolerance
+     * @return The index backed by the mapped file
+     * @throws IOException If the file can not be read or does not match the graph
+     */
+    public static NeighborhoodIndex open(File file, CompactGraph graph, int maxHops) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Truncated neighborhood cache " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            if (header.getInt() != MAGIC) throw new IOException("Not a neighborhood cache: " + file);
+            if (header.getInt() != VERSION) throw new IOException("Unsupported neighborhood cache version: " + file);
+            int fileMaxHops = header.getInt();
+            int vertexCount = header.getInt();
+            int edgeCount = header.getInt();
+            long hash = header.getLong();
+            long entries = header.getLong();
+
+            if (fileMaxHops != maxHops) {
+                throw new IOException("Neighborhood cache was built for dSkip=" + fileMaxHops);
+            }
+            if (vertexCount != graph.getVertexCount() || edgeCount != graph.getEdgeCount()
+                    || hash != graph.fingerprint()) {
+                throw new IOException("Neighborhood cache does not match the current graph");
+            }
+
+            long offsetsBytes = 4L * (vertexCount + 1);
+            long targetsBytes = 4L * entries;
+            if (channel.size() != HEADER_SIZE + offsetsBytes + targetsBytes + entries) {
+                throw new IOException("Truncated neighborhood cache " + file);
+            }
+
+            IntBuffer offsets = map(channel, HEADER_SIZE, offsetsBytes).asIntBuffer();
+            IntBuffer targets = map(channel, HEADER_SIZE + offsetsBytes, targetsBytes).asIntBuffer();
+            ByteBuffer hops = map(channel, HEADER_SIZE + offsetsBytes + targetsBytes, entries);
+
+            return new NeighborhoodIndex(maxHops, offsets, targets, hops);
+        }
+    }
+
+    /**
+     * Returns true if every section of the index can be mapped, larger indices can not be cached
+     */
+    public static boolean fits(NeighborhoodIndex index) {
+        return 4L * (index.getVertexCount() + 1) <= Integer.MAX_VALUE && 4L * index.size() <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Writes the index to file. The file is replaced atomically once it is complete.
+     * @throws IOException If the file can not be written or the index does not {@link #fits(NeighborhoodIndex) fit}
+     */
+    public static void write(File file, NeighborhoodIndex index, CompactGraph graph) throws IOException {
+        if (!fits(index)) {
+            throw new IOException("Neighborhood index with " + index.size() + " entries is too large to map");
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(index.getMaxHops());
+            header.putInt(graph.getVertexCount());
+            header.putInt(graph.getEdgeCount());
+            header.putLong(graph.fingerprint());
+            header.putLong(index.size());
+            header.position(HEADER_SIZE);
+            header.flip();
+            writeFully(channel, header);
+
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            IntBuffer offsets = index.getOffsets();
+            offsets.rewind();
+            writeInts(channel, buffer, offsets);
+
+            IntBuffer targets = index.getTargets();
+            targets.rewind();
+            writeInts(channel, buffer, targets);
+
+            ByteBuffer hops = index.getHops();
+            hops.rewind();
+            writeFully(channel, hops);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Neighborhood cache section too large to map: " + size + " bytes");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, IntBuffer values) throws IOException {
+        while (values.hasRemaining()) {
+            buffer.clear();
+            while (values.hasRemaining() && buffer.remaining() >= 4) {
+                buffer.putInt(values.get());
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -5,222 +5,529 @@ import java.sql.*;
 import java.util.*;
 import java.util.Date;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
+import de.l3s.st_discovery.graph.CompactGraph;
+import de.l3s.st_discovery.graph.OutlierStore;
 import de.l3s.st_discovery.graph.Subgraph;
+import de.l3s.st_discovery.source.DataSources;
 import de.l3s.st_discovery.util.configuration.Configurable;
 import de.l3s.st_discovery.util.configuration.Configuration;
 import de.l3s.st_discovery.util.configuration.ConfigurationParser;
 import de.l3s.st_discovery.util.db.PostgreDB;
 import de.l3s.st_discovery.util.misc.ProgressBar;
-import org.jgrapht.Graph;
-import org.jgrapht.GraphPath;
-import org.jgrapht.alg.interfaces.ShortestPathAlgorithm;
-import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
 
 public class RegionGrowing extends Configurable {
 
-    private Map<Integer, LabeledDefaultEdge> edgesMap;
-    private int maxNodeId;
-    private Graph<Integer, LabeledDefaultEdge> graph;
-    private SortedMap<Date, Set<Segment>> outliersMap;
+    private CompactGraph graph;
+    private OutlierStore outliers;
     private int dskip;
-    private boolean cacheDistances, writeRegions;
+    //sorted, distinct and containing dskip
+    private int[] dskipLevels;
+    private long temporalGap;
+    private boolean cacheDistances, writeRegions, incremental;
     private String subGraphName;
     private String regionTableName;
 
+    //resident state that is reused by all batches
+    private NeighborhoodIndex neighborhoods;
+    private Set<Long> processedTimePoints;
+    //continues regions across batches in incremental mode
+    private SpatioTemporalLinker incrementalLinker;
+    private boolean memoizeRegions;
+    private Map<RegionKey, int[][][]> regionCache;
+    private AtomicLong cacheHits, cacheMisses;
+
     public static void registerConfigEntries(ConfigurationParser cp) {
         cp.addIntOption("ds", "dSkip", "Maximum edge distance that can be skipped during region growing");
+        cp.addStringOption("dsl", "dSkipLevels", "dSkip values separated by ';' whose regions are computed in one pass");
         cp.addBooleanOption("cd", "cacheDistances", "Enable caching of distances within the graph");
         cp.addBooleanOption("wr", "writeRegions", "Store the result of region growing in the database");
         cp.addStringOption("rtn", "regionTableName", "Name of the table to store regions");
+        cp.addIntOption("tg", "temporalGap", "Maximum gap in seconds to link regions of consecutive time points, 0 disables linking");
+        cp.addBooleanOption("mr", "memoizeRegions", "Reuse region growing results for time points with identical outlier sets (default true)");
+        cp.addIntOption("rcs", "regionCacheSize", "Maximum number of outlier sets whose region growing results are kept (default 10000)");
+        cp.addBooleanOption("ir", "incrementalRegions", "Skip time points that are already stored in the region table and only store new regions");
     }
 
-    public RegionGrowing(Configuration config, Graph<Integer, LabeledDefaultEdge> graph,
-                         SortedMap<Date, Set<Segment>> outliersMap,
-                         Map<Integer, LabeledDefaultEdge> edgesMap,
-                         int maxNodeId) {
+    public RegionGrowing(Configuration config, CompactGraph graph, OutlierStore outliers) {
         super(config);
-        this.edgesMap = edgesMap;
-        this.maxNodeId = maxNodeId;
         this.graph = graph;
-        this.outliersMap = outliersMap;
+        this.outliers = outliers;
 
         this.dskip = config.getIntOption("dSkip", 2);
         this.cacheDistances = config.getBooleanOption("cacheDistances", false);
         this.subGraphName = config.getStringOption("subgraphName");
         this.writeRegions = config.getBooleanOption("writeRegions", false);
         this.regionTableName = config.getStringOption("regionTableName", "region_growing");
+        this.incremental = config.getBooleanOption("incrementalRegions", false);
+        this.temporalGap = config.getIntOption("temporalGap", 0) * 1000L;
+        this.memoizeRegions = config.getBooleanOption("memoizeRegions", true);
+        this.dskipLevels = parseLevels(config.getStringOption("dSkipLevels", ""), dskip);
+        if ((writeRegions || incremental) && DataSources.isFileBased(config)) {
+            Logger.getLogger(RegionGrowing.class.getName()).log(Level.WARNING,
+                    "The region table needs the database, ignoring writeRegions and incrementalRegions");
+            this.writeRegions = false;
+            this.incremental = false;
+        }
+        if ((writeRegions || incremental) && dskipLevels.length > 1) {
+            Logger.getLogger(RegionGrowing.class.getName()).log(Level.WARNING,
+                    "The region table holds a single dSkip, ignoring writeRegions and incrementalRegions");
+            this.writeRegions = false;
+            this.incremental = false;
+        }
+        int regionCacheSize = config.getIntOption("regionCacheSize", 10000);
+        //least recently used outlier sets are evicted
+        this.regionCache = Collections.synchronizedMap(new LinkedHashMap<RegionKey, int[][][]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RegionKey, int[][][]> eldest) {
+                return size() > regionCacheSize;
+            }
+        });
+        this.cacheHits = new AtomicLong();
+        this.cacheMisses = new AtomicLong();
+    }
+
+    /**
+     * Parses the dSkip levels, dskip is always one of them
+     */
+    private static int[] parseLevels(String levels, int dskip) {
+        SortedSet<Integer> result = new TreeSet<>();
+        result.add(dskip);
+        for (String level : levels.split(";")) {
+            if (!level.trim().isEmpty()) {
+                result.add(Integer.parseInt(level.trim()));
+            }
+        }
+        return result.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns the dSkip values that {@link #runLevels()} computes regions for, in ascending order
+     */
+    public int[] getDSkipLevels() {
+        return dskipLevels.clone();
+    }
+
+    private int getMaxDSkip() {
+        return dskipLevels[dskipLevels.length - 1];
     }
 
     public Map<Date, List<Subgraph>> run() {
-        Map<Integer, Map<Integer, Short>> distances = getEdgeCountDistanceMatrix(graph);
-        System.out.println("Loaded edge count distances");
+        return process(outliers);
+    }
+
+    /**
+     * Performs region growing for every dSkip level, see {@link #processLevels(OutlierStore)}
+     */
+    public Map<Integer, Map<Date, List<Subgraph>>> runLevels() {
+        return processLevels(outliers);
+    }
 
-        Set<Date> timePoints = outliersMap.keySet();
+    /**
+     * Performs region growing for a batch of time points. The graph and the neighborhood index stay resident
+     * between calls, so newly arriving time points can be processed without recomputing earlier ones.
+     * In incremental mode time points that are already stored in the region table (or were processed by an
+     * earlier call) are skipped and only the new regions are stored and returned. Linking continues the regions
+     * of earlier batches, so batches have to arrive in time order.
+     * @param batch Outliers per time point
+     * @return Regions of the processed time points
+     */
+    public Map<Date, List<Subgraph>> process(OutlierStore batch) {
+        NeighborhoodIndex neighborhoods = getNeighborhoods();
+
+        int[] timePoints = IntStream.range(0, batch.size()).toArray();
+        if (incremental) {
+            if (processedTimePoints == null) {
+                processedTimePoints = fetchProcessedTimePoints();
+            }
+            timePoints = Arrays.stream(timePoints)
+                    .filter(i -> !processedTimePoints.contains(batch.getTime(i)))
+                    .toArray();
+            System.out.println("Skipping " + (batch.size() - timePoints.length) + " already processed time points");
+        }
 
         Map<Date, List<Subgraph>> regions = new ConcurrentHashMap<>();
-        ProgressBar pb = new ProgressBar("Performing region growing", timePoints.size());
+        ProgressBar pb = new ProgressBar("Performing region growing", timePoints.length);
         pb.start();
-        timePoints.stream().parallel().forEach(t -> {
+        Arrays.stream(timePoints).parallel().forEach(i -> {
+            int[] edges = batch.getEdges(i);
+
+            List<Subgraph> clusters = applyRegionGrowingForClusters(neighborhoods, dskip, 2, edges);
+            regions.put(new Date(batch.getTime(i)), clusters);
+            pb.step();
+        });
+        pb.stop();
+        printCacheStatistics();
 
-            Set<Segment> outliers = outliersMap.get(t);
+        Map<Date, List<Subgraph>> result;
+        if (incremental && temporalGap > 0) {
+            if (incrementalLinker == null) {
+                incrementalLinker = new SpatioTemporalLinker(temporalGap);
+            }
+            result = link(incrementalLinker, regions);
+        } else {
+            result = link(regions);
+        }
+        if (writeRegions || incremental) {
+            writeRegions(result);
+        }
+        if (incremental) {
+            for (int i : timePoints) {
+                processedTimePoints.add(batch.getTime(i));
+            }
+        }
 
+        return result;
+    }
 
-            List<Subgraph> clusters = applyRegionGrowingForClusters(distances, dskip, 2, outliers);
-            regions.put(t, clusters);
+    /**
+     * Performs region growing for all dSkip levels in one pass per time point. Clusters only join as dSkip
+     * grows, so the outlier edges are paired once within the largest dSkip and the pairs are unioned level
+     * by level, the clusters of a level are taken before the pairs of the next level are added.
+     * @param batch Outliers per time point
+     * @return Regions of the processed time points per dSkip level
+     */
+    public Map<Integer, Map<Date, List<Subgraph>>> processLevels(OutlierStore batch) {
+        NeighborhoodIndex neighborhoods = getNeighborhoods();
+
+        List<Map<Date, List<Subgraph>>> levelRegions = new ArrayList<>();
+        for (int l = 0; l < dskipLevels.length; ++l) {
+            levelRegions.add(new ConcurrentHashMap<>());
+        }
+        ProgressBar pb = new ProgressBar("Performing region growing for dSkip " + Arrays.toString(dskipLevels),
+                batch.size());
+        pb.start();
+        IntStream.range(0, batch.size()).parallel().forEach(i -> {
+            int[][][] clusters = applyRegionGrowingForLevels(neighborhoods, dskipLevels, 2, batch.getEdges(i));
+            Date time = new Date(batch.getTime(i));
+            for (int l = 0; l < dskipLevels.length; ++l) {
+                levelRegions.get(l).put(time, toSubgraphs(clusters[l]));
+            }
             pb.step();
         });
         pb.stop();
+        printCacheStatistics();
 
-        if (writeRegions) {
-            writeRegions(regions);
+        Map<Integer, Map<Date, List<Subgraph>>> result = new TreeMap<>();
+        for (int l = 0; l < dskipLevels.length; ++l) {
+            result.put(dskipLevels[l], link(levelRegions.get(l)));
         }
+        return result;
+    }
 
-        return regions;
+    private void printCacheStatistics() {
+        if (memoizeRegions) {
+            System.out.println("Region cache: " + cacheHits.get() + " hits, " + cacheMisses.get() + " misses, "
+                    + regionCache.size() + " cached outlier sets");
+        }
     }
 
+    /**
+     * Links the regions of consecutive time points if a temporal gap is set
+     */
+    private Map<Date, List<Subgraph>> link(Map<Date, List<Subgraph>> regions) {
+        if (temporalGap <= 0) {
+            return regions;
+        }
+        return link(new SpatioTemporalLinker(temporalGap), regions);
+    }
 
-    private Map<Integer, Map<Integer, Short>> getEdgeCountDistanceMatrix(Graph<Integer, LabeledDefaultEdge> graph) {
-        String fname = "edgeCountDistances_" + subGraphName + "_cache.csv";
-        Map<Integer, Map<Integer, Short>> distances = new ConcurrentHashMap<>();
-
-        if (cacheDistances) {
-            File distancesFile = new File(fname);
-            if (distancesFile.exists() && distancesFile.length() != 0) {
-                //read distances from the file
-                BufferedReader br;
-                try {
-                    br = new BufferedReader(new FileReader(distancesFile));
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        String[] fields = line.split(",");
-                        int i = Integer.parseInt(fields[0]);
-                        int j = Integer.parseInt(fields[1]);
-                        short val = Short.parseShort(fields[2]);
-
-                        if (!distances.containsKey(i)) {
-                            distances.put(i, new ConcurrentHashMap<>());
-                        }
-                        distances.get(i).put(j, val);
-                    }
-                } catch (IOException ex) {
-                    Logger.getLogger(RegionGrowing.class.getName()).log(Level.SEVERE, null, ex);
-                }
-                return distances;
-            }
+    private Map<Date, List<Subgraph>> link(SpatioTemporalLinker linker, Map<Date, List<Subgraph>> regions) {
+        Map<Date, List<Subgraph>> result = linker.link(new TreeMap<>(regions));
+        System.out.println("Linked " + countRegions(regions) + " regions into "
+                + countRegions(result) + " spatio-temporal regions");
+        return result;
+    }
+
+    /**
+     * Returns the hop bounded neighborhoods of the graph, they are loaded or computed on first use
+     */
+    public NeighborhoodIndex getNeighborhoods() {
+        if (neighborhoods == null) {
+            neighborhoods = getNeighborhoodIndex(graph);
+            System.out.println("Loaded edge count neighborhoods (" + neighborhoods.size() + " entries)");
         }
+        return neighborhoods;
+    }
 
-        //calculate distances
-        List<Integer> vertices = new ArrayList<>(graph.vertexSet());
-        DijkstraShortestPath<Integer, LabeledDefaultEdge> dijkstraAlg = new DijkstraShortestPath<>(graph);
-        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-
-        for (int i = 0; i < vertices.size(); i++) {
-            Integer v = vertices.get(i);
-            Map<Integer, Short> vertexDistances = new ConcurrentHashMap<>();
-            distances.put(v, vertexDistances);
-
-            ShortestPathAlgorithm.SingleSourcePaths<Integer, LabeledDefaultEdge> paths = dijkstraAlg.getPaths(v);
-            for (int j = 0; j < vertices.size(); j++) {
-                Integer u = vertices.get(j);
-                Runnable runnable = () -> {
-                    GraphPath<Integer, LabeledDefaultEdge> path = paths.getPath(u);
-                    vertexDistances.put(u, (short) ((path != null) ? path.getEdgeList().size() : Short.MAX_VALUE));
-                };
-                executor.execute(runnable);
-            }
+    /**
+     * Uses neighborhoods that were computed for the same graph and the largest dSkip level
+     */
+    public void setNeighborhoods(NeighborhoodIndex neighborhoods) {
+        if (neighborhoods.getMaxHops() != getMaxDSkip()) {
+            throw new IllegalArgumentException("Neighborhoods were computed for a different dSkip");
         }
-        executor.shutdown();
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
-        } catch (InterruptedException e) {
+        this.neighborhoods = neighborhoods;
+    }
+
+    private static int countRegions(Map<Date, List<Subgraph>> regions) {
+        return regions.values().stream().mapToInt(List::size).sum();
+    }
+
+    private Set<Long> fetchProcessedTimePoints() {
+        Set<Long> result = new HashSet<>();
+        PostgreDB db = new PostgreDB(config);
+
+        String selectQuery = "SELECT DISTINCT time FROM " + regionTableName + " WHERE streetgraph_name = ?";
+
+        try (Connection con = db.getConnection();
+             Statement createStmt = con.createStatement();
+             PreparedStatement selectStmt = con.prepareStatement(selectQuery)) {
+
+            createStmt.execute(getCreateRegionTableQuery());
+            selectStmt.setString(1, subGraphName);
+            try (ResultSet rs = selectStmt.executeQuery()) {
+                while (rs.next()) {
+                    result.add(rs.getTimestamp(1).getTime());
+                }
+            }
+        } catch (SQLException e) {
             e.printStackTrace();
             System.exit(2);
+        } finally {
+            db.close();
         }
+        return result;
+    }
 
-        //save distances
-        if (cacheDistances) {
-            File distancesFile = new File(fname);
+    private String getCreateRegionTableQuery() {
+        return "CREATE TABLE IF NOT EXISTS " + regionTableName + " (\n" +
+                "    id serial primary key,\n" +
+                "    subgraph_id integer,\n" +
+                "    time timestamp  without time zone,\n" +
+                "    streetgraph_name text,\n" +
+                "    edges integer[],\n" +
+                "    creation_date timestamp without time zone default now()\n" +
+                ")";
+    }
 
+
+    private NeighborhoodIndex getNeighborhoodIndex(CompactGraph graph) {
+        int maxHops = getMaxDSkip();
+        File cacheFile = new File("edgeCountDistances_" + subGraphName + "_" + maxHops + "_cache.bin");
+
+        if (cacheDistances && cacheFile.exists()) {
             try {
-                BufferedWriter bw = new BufferedWriter(new FileWriter(distancesFile));
+                return NeighborhoodIndexFile.open(cacheFile, graph, maxHops);
+            } catch (IOException ex) {
+                Logger.getLogger(RegionGrowing.class.getName()).log(Level.WARNING,
+                        "Ignoring neighborhood cache: " + ex.getMessage());
+            }
+        }
 
-                for (Integer i : distances.keySet()) {
-                    Map<Integer, Short> vertexDistances = distances.get(i);
-                    for (Integer j : vertexDistances.keySet()) {
-                        bw.write(i + "," + j + "," + vertexDistances.get(j) + "\n");
-                    }
-                }
-                bw.close();
+        //calculate hop bounded neighborhoods
+        NeighborhoodIndex index = NeighborhoodIndex.build(graph, maxHops);
+
+        //save distances, an index that can not be mapped would be recomputed on every run anyway
+        if (cacheDistances && !NeighborhoodIndexFile.fits(index)) {
+            Logger.getLogger(RegionGrowing.class.getName()).log(Level.WARNING,
+                    "Neighborhood index with " + index.size() + " entries is too large to cache, it is not written");
+        } else if (cacheDistances) {
+            try {
+                NeighborhoodIndexFile.write(cacheFile, index, graph);
             } catch (IOException ex) {
                 Logger.getLogger(RegionGrowing.class.getName()).log(Level.SEVERE, null, ex);
             }
         }
 
-        return distances;
+        return index;
     }
 
 
-    private List<Subgraph> applyRegionGrowingForClusters(Map<Integer, Map<Integer, Short>> distances,
+    private List<Subgraph> applyRegionGrowingForClusters(NeighborhoodIndex neighborhoods,
                                                          int tolerance,
                                                          int minItems,
-                                                         Set<Segment> outliers) {
-
-        List<Subgraph> clusters = new ArrayList<>();
-        for (Segment outlier : outliers) {
-            LabeledDefaultEdge edge = edgesMap.get(outlier.id);
-            if (edge != null) {
-                List<Subgraph> closeClusters = new ArrayList<>();
-                for (int i = 0; i < clusters.size(); i++) {
-                    Subgraph cluster = clusters.get(i);
-                    for (LabeledDefaultEdge edge2 : cluster) {
-                        if (distances.get(edge.node_sink).get(edge2.node_source) <= tolerance) {
-                            closeClusters.add(cluster);
-                            break;
+                                                         int[] edges) {
+        return toSubgraphs(applyRegionGrowingForLevels(neighborhoods, new int[]{tolerance}, minItems, edges)[0]);
+    }
+
+    /**
+     * Returns the clusters of every tolerance level
+     * @param tolerances Ascending tolerances
+     */
+    private int[][][] applyRegionGrowingForLevels(NeighborhoodIndex neighborhoods,
+                                                  int[] tolerances,
+                                                  int minItems,
+                                                  int[] edges) {
+        if (!memoizeRegions) {
+            return growLevels(neighborhoods, tolerances, minItems, edges);
+        }
+
+        //identical outlier sets yield identical clusters, only the subgraphs (and their ids) are fresh
+        RegionKey key = new RegionKey(edges, tolerances, minItems);
+        int[][][] clusters = regionCache.get(key);
+        if (clusters == null) {
+            cacheMisses.incrementAndGet();
+            clusters = growLevels(neighborhoods, tolerances, minItems, edges);
+            regionCache.putIfAbsent(key, clusters);
+        } else {
+            cacheHits.incrementAndGet();
+        }
+        return clusters;
+    }
+
+    private int[][][] growLevels(NeighborhoodIndex neighborhoods, int[] tolerances, int minItems, int[] edges) {
+        if (tolerances.length == 1) {
+            return new int[][][]{toClusters(edges, growRegions(neighborhoods, tolerances[0], edges), minItems)};
+        }
+
+        //pairs within the smallest tolerance are unioned right away, the others are kept for their level
+        DisjointSet clusters = new DisjointSet(edges.length);
+        long[][] pairs = new long[tolerances.length][];
+        int[] pairCounts = new int[tolerances.length];
+        int maxTolerance = tolerances[tolerances.length - 1];
+
+        for (int i = 0; i < edges.length; ++i) {
+            int sink = graph.getEdgeTarget(edges[i]);
+            int end = neighborhoods.neighborsEnd(sink);
+            for (int p = neighborhoods.neighborsStart(sink); p < end; ++p) {
+                int hops = neighborhoods.hopsAt(p);
+                if (hops > maxTolerance) continue;
+
+                int level = 0;
+                while (tolerances[level] < hops) {
+                    ++level;
+                }
+                int v = neighborhoods.neighborAt(p);
+                for (int e = graph.outgoingStart(v); e < graph.outgoingEnd(v); ++e) {
+                    int j = Arrays.binarySearch(edges, 0, i, e);
+                    if (j < 0) continue;
+
+                    if (level == 0) {
+                        clusters.union(i, j);
+                    } else {
+                        if (pairs[level] == null) {
+                            pairs[level] = new long[16];
+                        } else if (pairCounts[level] == pairs[level].length) {
+                            pairs[level] = Arrays.copyOf(pairs[level], pairCounts[level] * 2);
                         }
+                        pairs[level][pairCounts[level]++] = (((long) i) << 32) | j;
                     }
                 }
-                Subgraph cluster = new Subgraph();
-                cluster.addEdge(edge);
-                clusters.add(cluster);
-                for (Subgraph closeCluster : closeClusters) {
-                    cluster.addAll(closeCluster);
-                }
-                clusters.removeAll(closeClusters);
             }
         }
 
-        for (int i = clusters.size() - 1; i >= 0; i--) {
-            Subgraph cluster = clusters.get(i);
-            if (cluster.size() < minItems) {
-                clusters.remove(i);
+        int[][][] result = new int[tolerances.length][][];
+        for (int level = 0; level < tolerances.length; ++level) {
+            for (int k = 0; k < pairCounts[level]; ++k) {
+                clusters.union((int) (pairs[level][k] >>> 32), (int) pairs[level][k]);
+            }
+            result[level] = toClusters(edges, clusters, minItems);
+        }
+        return result;
+    }
+
+    /**
+     * Clusters outlier edges: edges are processed in order and an edge joins the cluster of every
+     * previously processed edge whose source can be reached from its sink within tolerance hops.
+     * The previously processed edges are found through the neighborhood of the sink instead of
+     * enumerating the existing clusters.
+     * @param edges Sorted edge indices
+     * @return Disjoint sets over the positions in edges
+     */
+    private DisjointSet growRegions(NeighborhoodIndex neighborhoods, int tolerance, int[] edges) {
+        DisjointSet clusters = new DisjointSet(edges.length);
+
+        for (int i = 0; i < edges.length; ++i) {
+            int sink = graph.getEdgeTarget(edges[i]);
+            int end = neighborhoods.neighborsEnd(sink);
+            for (int p = neighborhoods.neighborsStart(sink); p < end; ++p) {
+                if (neighborhoods.hopsAt(p) > tolerance) continue;
+
+                //edges starting at a vertex close to the sink
+                int v = neighborhoods.neighborAt(p);
+                for (int e = graph.outgoingStart(v); e < graph.outgoingEnd(v); ++e) {
+                    int j = Arrays.binarySearch(edges, 0, i, e);
+                    if (j >= 0) {
+                        clusters.union(i, j);
+                    }
+                }
             }
         }
         return clusters;
     }
 
+    /**
+     * Collects the edge indices of every cluster with at least minItems edges
+     * @param edges Sorted edge indices
+     * @return Clusters with ascending edge indices, they may be shared through the region cache and must not be modified
+     */
+    private int[][] toClusters(int[] edges, DisjointSet sets, int minItems) {
+        Map<Integer, int[]> rootToCluster = new LinkedHashMap<>();
+        int[] fill = new int[edges.length];
+
+        for (int i = 0; i < edges.length; ++i) {
+            int size = sets.sizeOf(i);
+            if (size < minItems) continue;
+
+            int root = sets.find(i);
+            int[] cluster = rootToCluster.get(root);
+            if (cluster == null) {
+                cluster = new int[size];
+                rootToCluster.put(root, cluster);
+            }
+            cluster[fill[root]++] = edges[i];
+        }
+        return rootToCluster.values().toArray(new int[0][]);
+    }
+
+    private List<Subgraph> toSubgraphs(int[][] clusters) {
+        List<Subgraph> result = new ArrayList<>(clusters.length);
+        for (int[] cluster : clusters) {
+            //clusters are ascending (see toClusters), so the edges are appended to the subgraph
+            Subgraph subgraph = new Subgraph();
+            for (int edge : cluster) {
+                subgraph.addEdge(graph.getEdge(edge));
+            }
+            result.add(subgraph);
+        }
+        return result;
+    }
+
+    /**
+     * Cache key for region growing results: the sorted outlier edge indices and the growing parameters
+     */
+    private static class RegionKey {
+        private final int[] edges;
+        private final int[] tolerances;
+        private final int minItems;
+        private final int hash;
+
+        RegionKey(int[] edges, int[] tolerances, int minItems) {
+            this.edges = edges;
+            this.tolerances = tolerances;
+            this.minItems = minItems;
+            this.hash = 31 * (31 * Arrays.hashCode(edges) + Arrays.hashCode(tolerances)) + minItems;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            RegionKey that = (RegionKey) o;
+            return hash == that.hash && minItems == that.minItems && Arrays.equals(tolerances, that.tolerances)
+                    && Arrays.equals(edges, that.edges);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
     private void writeRegions(Map<Date, List<Subgraph>> regions) {
         PostgreDB db = new PostgreDB(config);
 
 
         try {
             Connection con = db.getConnection();
-            String createQuery = "CREATE TABLE IF NOT EXISTS " + regionTableName + " (\n" +
-                    "    id serial primary key,\n" +
-                    "    subgraph_id integer,\n" +
-                    "    time timestamp  without time zone,\n" +
-                    "    streetgraph_name text,\n" +
-                    "    edges integer[],\n" +
-                    "    creation_date timestamp without time zone default now()\n" +
-                    ")";
 
             Statement createStmt = con.createStatement();
-            createStmt.execute(createQuery);
+            createStmt.execute(getCreateRegionTableQuery());
             createStmt.close();
 
             String insertQuery = "INSERT INTO " + regionTableName + " (subgraph_id, time, streetgraph_name, edges) VALUES (?, ?, ?, ?)";
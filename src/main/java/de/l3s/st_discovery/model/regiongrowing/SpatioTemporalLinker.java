@@ -0,0 +1,155 @@
+package de.l3s.st_discovery.model.regiongrowing;
+
+import de.l3s.st_discovery.graph.Subgraph;
+
+import java.util.*;
+
+/**
+ * Links regions of consecutive time points into spatio-temporal regions.
+ *
+ * The time points are visited in order while a sliding window keeps the regions that were extended within
+ * the last maxGap milliseconds. A region joins every open region it shares an edge with; regions that are
+ * not extended within maxGap leave the window. Every linked region is reported once, at the time point it
+ * started, with the union of the edges of all regions it absorbed.
+ *
+ * The window is kept between calls, so batches of later time points continue the open regions of earlier
+ * batches and the linking does not depend on how the time points are split into batches. A region that is
+ * continued by a later batch is reported again by that batch, on a copy with all its edges, the results of
+ * earlier calls are not modified. Batches have to be passed in ascending time order.
+ */
+public class SpatioTemporalLinker {
+
+    private long maxGap;
+    //open tracks, kept between calls
+    private Deque<WindowEntry> window = new ArrayDeque<>();
+    private Map<Integer, Track> edgeToTrack = new HashMap<>();
+
+    public SpatioTemporalLinker(long maxGap) {
+        this.maxGap = maxGap;
+    }
+
+    private static class Track {
+        Date start;
+        long lastSeen;
+        Subgraph subgraph;
+        Track mergedInto;
+
+        Track resolve() {
+            Track t = this;
+            while (t.mergedInto != null) {
+                t = t.mergedInto;
+            }
+            return t;
+        }
+    }
+
+    private static class WindowEntry {
+        Track track;
+        long seenAt;
+
+        WindowEntry(Track track, long seenAt) {
+            this.track = track;
+            this.seenAt = seenAt;
+        }
+    }
+
+    /**
+     * Links the regions of a batch of time points to each other and to the open regions of earlier batches
+     * @param regions Regions per time point
+     * @return Linked regions that were started or continued in this batch, keyed by the time point they started
+     */
+    public Map<Date, List<Subgraph>> link(SortedMap<Date, List<Subgraph>> regions) {
+        //in creation order, continued tracks of earlier batches at their first extension
+        Set<Track> tracks = new LinkedHashSet<>();
+
+        for (Map.Entry<Date, List<Subgraph>> entry : regions.entrySet()) {
+            long t = entry.getKey().getTime();
+
+            //slide the window, entries of tracks that were extended later are stale
+            while (!window.isEmpty() && t - window.peekFirst().seenAt > maxGap) {
+                WindowEntry oldest = window.pollFirst();
+                Track expired = oldest.track;
+                if (expired.mergedInto != null || expired.lastSeen != oldest.seenAt) continue;
+                for (LabeledDefaultEdge e : expired.subgraph) {
+                    edgeToTrack.remove(e.index, expired);
+                }
+            }
+
+            //link against the window only, regions of the same time point are joined through earlier ones
+            List<Subgraph> linkedRegions = new ArrayList<>();
+            List<Track> linkedTracks = new ArrayList<>();
+            for (Subgraph region : entry.getValue()) {
+                Track target = null;
+                for (LabeledDefaultEdge e : region) {
+                    Track open = edgeToTrack.get(e.index);
+                    if (open == null) continue;
+                    open = open.resolve();
+                    if (target == null) {
+                        target = open;
+                    } else if (target != open) {
+                        target = merge(continueTrack(target, tracks), continueTrack(open, tracks));
+                    }
+                }
+
+                if (target == null) {
+                    target = new Track();
+                    target.start = entry.getKey();
+                    target.lastSeen = Long.MIN_VALUE;
+                    target.subgraph = region;
+                    tracks.add(target);
+                } else {
+                    target = continueTrack(target, tracks);
+                    target.subgraph.addAll(region);
+                }
+                linkedRegions.add(region);
+                linkedTracks.add(target);
+            }
+
+            for (int i = 0; i < linkedRegions.size(); ++i) {
+                Track track = linkedTracks.get(i).resolve();
+                if (track.lastSeen != t) {
+                    track.lastSeen = t;
+                    window.addLast(new WindowEntry(track, t));
+                }
+                for (LabeledDefaultEdge e : linkedRegions.get(i)) {
+                    edgeToTrack.put(e.index, track);
+                }
+            }
+        }
+
+        Map<Date, List<Subgraph>> result = new TreeMap<>();
+        for (Track track : tracks) {
+            if (track.mergedInto != null) continue;
+            if (!result.containsKey(track.start)) {
+                result.put(track.start, new ArrayList<>());
+            }
+            result.get(track.start).add(track.subgraph);
+        }
+        return result;
+    }
+
+    /**
+     * Registers a track as extended by the current batch, a track of an earlier batch continues on a copy
+     */
+    private static Track continueTrack(Track track, Set<Track> tracks) {
+        if (tracks.add(track)) {
+            track.subgraph = track.subgraph.copy();
+        }
+        return track;
+    }
+
+    /**
+     * Merges the later of two tracks into the earlier one
+     */
+    private Track merge(Track a, Track b) {
+        Track keep = (b.start.before(a.start)) ? b : a;
+        Track drop = (keep == a) ? b : a;
+
+        keep.subgraph.addAll(drop.subgraph);
+        drop.mergedInto = keep;
+        for (LabeledDefaultEdge e : drop.subgraph) {
+            edgeToTrack.put(e.index, keep);
+        }
+        return keep;
+    }
+}
@@ -4,6 +4,11 @@ import de.l3s.st_discovery.util.configuration.Configurable;
 import de.l3s.st_discovery.util.configuration.Configuration;
 import de.l3s.st_discovery.util.db.PostgreDB;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -75,4 +80,19 @@ public class DependencyRecordWriter extends Configurable {
 
     }
 
+    /**
+     * Writes the records as tab separated values
+     */
+    public void writeToFile(List<DependencyRecord> records, File file) {
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write("subgraph_1\tsubgraph_2\tdistance\tmutual_information\tscore\n");
+            for (DependencyRecord r : records) {
+                out.write(r.subgraph1 + "\t" + r.subgraph2 + "\t" + r.distance + "\t"
+                        + r.mutualInformation + "\t" + r.score + "\n");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
 }
@@ -0,0 +1,142 @@
+package de.l3s.st_discovery.output;
+
+import de.l3s.st_discovery.util.configuration.Configurable;
+import de.l3s.st_discovery.util.configuration.Configuration;
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes outliers identified in the JVM to the outlier table
+ */
+public class OutlierWriter extends Configurable {
+
+    private static final int COPY_BATCH_SIZE = 10000;
+
+    private String inputTable, outlierTable, speedColumn, idColumn, timeColumn;
+
+    public OutlierWriter(Configuration config) {
+        super(config);
+        inputTable = config.getStringOption("inputTable");
+        outlierTable = config.getStringOption("outlierTable");
+        speedColumn = config.getStringOption("speedColumn");
+        idColumn = config.getStringOption("idColumn");
+        timeColumn = config.getStringOption("timeColumn");
+    }
+
+    /**
+     * Outlier records, filled by one thread
+     */
+    public static class Rows {
+        private int size;
+        private long[] ids = new long[64];
+        private Timestamp[] times = new Timestamp[64];
+        private double[] speeds = new double[64];
+
+        public void add(long id, Timestamp time, double speed) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                times = Arrays.copyOf(times, size * 2);
+                speeds = Arrays.copyOf(speeds, size * 2);
+            }
+            ids[size] = id;
+            times[size] = time;
+            speeds[size] = speed;
+            ++size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getId(int i) {
+            return ids[i];
+        }
+
+        public Timestamp getTime(int i) {
+            return times[i];
+        }
+
+        public double getSpeed(int i) {
+            return speeds[i];
+        }
+    }
+
+    /**
+     * Replaces the outlier table by an empty table with the columns of the input table
+     */
+    public void createTable(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS " + outlierTable + ";");
+            stmt.execute("CREATE TABLE " + outlierTable + " AS " +
+                    "select " + idColumn + ", " + timeColumn + ", " + speedColumn + " from " + inputTable +
+                    " WITH NO DATA;");
+        }
+    }
+
+    /**
+     * Bulk writes the outliers with COPY
+     * @return Number of written outliers
+     */
+    public long write(Connection con, List<Rows> outliers) throws SQLException {
+        String columns = idColumn + ", " + timeColumn + ", " + speedColumn;
+        String copyQuery = "COPY " + outlierTable + " (" + columns + ") FROM STDIN WITH (FORMAT text)";
+
+        boolean integralSpeeds;
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("select " + columns + " from " + outlierTable + " limit 0;")) {
+            integralSpeeds = isIntegral(rs.getMetaData().getColumnType(3));
+        }
+
+        long written = 0;
+        try {
+            PGConnection pgCon = con.unwrap(PGConnection.class);
+            StringBuilder rows = new StringBuilder();
+            int batched = 0;
+            for (Rows part : outliers) {
+                for (int i = 0; i < part.size; ++i) {
+                    appendRow(rows, part, i, integralSpeeds);
+                    if (++batched == COPY_BATCH_SIZE) {
+                        written += pgCon.getCopyAPI().copyIn(copyQuery, new StringReader(rows.toString()));
+                        rows.setLength(0);
+                        batched = 0;
+                    }
+                }
+            }
+            if (batched > 0) {
+                written += pgCon.getCopyAPI().copyIn(copyQuery, new StringReader(rows.toString()));
+            }
+        } catch (IOException e) {
+            throw new SQLException("Writing outliers failed", e);
+        }
+        return written;
+    }
+
+    static boolean isIntegral(int sqlType) {
+        return sqlType == Types.SMALLINT || sqlType == Types.INTEGER || sqlType == Types.BIGINT;
+    }
+
+    /**
+     * Appends an outlier as a line of COPY text. Speeds of an integer column are written without fraction, the
+     * input syntax of integer columns does not accept "42.0".
+     */
+    static void appendRow(StringBuilder rows, Rows part, int i, boolean integralSpeeds) {
+        rows.append(part.ids[i]).append('\t')
+                .append(part.times[i]).append('\t');
+        if (integralSpeeds) {
+            rows.append(Math.round(part.speeds[i]));
+        } else {
+            rows.append(part.speeds[i]);
+        }
+        rows.append('\n');
+    }
+}
@@ -6,6 +6,11 @@ import de.l3s.st_discovery.util.configuration.Configurable;
 import de.l3s.st_discovery.util.configuration.Configuration;
 import de.l3s.st_discovery.util.db.PostgreDB;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -64,4 +69,20 @@ public class SubgraphWriter extends Configurable {
         }
 
     }
+
+    /**
+     * Writes the subgraphs as tab separated subgraph and street ids
+     */
+    public void writeSubgraphsToFile(List<Subgraph> subgraphs, File file) {
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write("subgraph\tstreet\n");
+            for (Subgraph sg: subgraphs) {
+                for (LabeledDefaultEdge edge: sg) {
+                    out.write(sg.getId() + "\t" + edge.label + "\n");
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 }
@@ -0,0 +1,155 @@
+package de.l3s.st_discovery.source;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary file of int, long and double columns, read through memory mapping.
+ *
+ * Layout (big endian):
+ * <pre>
+ * header  magic, version (int), rowCount (long), columnCount (int), type per column (byte: I, L or D)
+ * columns rowCount values per column, one column after the other
+ * </pre>
+ * Every column is mapped on its own, so a column may hold up to 2 GB.
+ */
+public class ColumnarFile {
+
+    private static final int MAGIC = 0x5354434F;
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final int rowCount;
+    private final byte[] types;
+    private final ByteBuffer[] columns;
+
+    private ColumnarFile(File file, int rowCount, byte[] types, ByteBuffer[] columns) {
+        this.file = file;
+        this.rowCount = rowCount;
+        this.types = types;
+        this.columns = columns;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public IntBuffer getIntColumn(int column) {
+        return column(column, 'I').asIntBuffer();
+    }
+
+    public LongBuffer getLongColumn(int column) {
+        return column(column, 'L').asLongBuffer();
+    }
+
+    public DoubleBuffer getDoubleColumn(int column) {
+        return column(column, 'D').asDoubleBuffer();
+    }
+
+    private ByteBuffer column(int column, char type) {
+        if (types[column] != type) {
+            throw new IllegalArgumentException("Column " + column + " of " + file + " is not of type " + type);
+        }
+        return columns[column].duplicate();
+    }
+
+    /**
+     * Returns whether target is missing or older than the file it is imported from
+     */
+    public static boolean isOutdated(File target, File source) {
+        return !target.exists() || (source.exists() && source.lastModified() > target.lastModified());
+    }
+
+    /**
+     * Writes the columns to file. The file is replaced atomically once it is complete.
+     * @param rowCount Number of rows, the arrays may be longer
+     * @param columns int[], long[] or double[] arrays
+     */
+    public static void write(File file, int rowCount, Object... columns) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 20))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(rowCount);
+            out.writeInt(columns.length);
+            for (Object column : columns) {
+                out.writeByte(typeOf(column));
+            }
+            for (Object column : columns) {
+                for (int i = 0; i < rowCount; ++i) {
+                    if (column instanceof int[]) {
+                        out.writeInt(((int[]) column)[i]);
+                    } else if (column instanceof long[]) {
+                        out.writeLong(((long[]) column)[i]);
+                    } else {
+                        out.writeDouble(((double[]) column)[i]);
+                    }
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static char typeOf(Object column) {
+        if (column instanceof int[]) return 'I';
+        if (column instanceof long[]) return 'L';
+        if (column instanceof double[]) return 'D';
+        throw new IllegalArgumentException("Unsupported column type " + column.getClass().getSimpleName());
+    }
+
+    private static int width(byte type) {
+        return (type == 'I') ? 4 : 8;
+    }
+
+    /**
+     * Maps the columns of a file written by {@link #write(File, int, Object...)}
+     */
+    public static ColumnarFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(20);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) throw new IOException("Not a columnar file: " + file);
+            if (header.getInt() != VERSION) throw new IOException("Unsupported columnar file version: " + file);
+            long rowCount = header.getLong();
+            int columnCount = header.getInt();
+            if (rowCount < 0 || rowCount > Integer.MAX_VALUE || columnCount < 0) {
+                throw new IOException("Corrupt columnar file " + file);
+            }
+
+            ByteBuffer typeBuffer = ByteBuffer.allocate(columnCount);
+            readFully(channel, typeBuffer, 20);
+            byte[] types = typeBuffer.array();
+
+            ByteBuffer[] columns = new ByteBuffer[columnCount];
+            long position = 20 + columnCount;
+            for (int c = 0; c < columnCount; ++c) {
+                if (types[c] != 'I' && types[c] != 'L' && types[c] != 'D') {
+                    throw new IOException("Unknown column type in " + file);
+                }
+                long length = rowCount * width(types[c]);
+                if (length > Integer.MAX_VALUE || position + length > channel.size()) {
+                    throw new IOException("Truncated columnar file " + file);
+                }
+                columns[c] = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                position += length;
+            }
+            return new ColumnarFile(file, (int) rowCount, types, columns);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated columnar file");
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package de.l3s.st_discovery.source;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Minimal reader for the comma separated import files
+ */
+class Csv {
+
+    /**
+     * Handles the fields of one line
+     */
+    interface RowHandler {
+        void handle(String[] fields, int line) throws IOException;
+    }
+
+    /**
+     * Reads all lines of file. A first line whose first field is not a number is treated as header.
+     * @param fields Number of fields, the last field takes the rest of the line and may contain commas
+     */
+    static void read(File file, int fields, RowHandler handler) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                ++lineNumber;
+                if (line.trim().isEmpty()) continue;
+
+                String[] row = split(line, fields);
+                if (row == null) {
+                    throw new IOException(file + ":" + lineNumber + ": expected " + fields + " fields");
+                }
+                if (lineNumber == 1 && !isNumber(row[0])) continue;
+
+                try {
+                    handler.handle(row, lineNumber);
+                } catch (RuntimeException e) {
+                    throw new IOException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private static String[] split(String line, int fields) {
+        String[] result = new String[fields];
+        int start = 0;
+        for (int f = 0; f < fields - 1; ++f) {
+            int end = line.indexOf(',', start);
+            if (end < 0) return null;
+            result[f] = unquote(line.substring(start, end));
+            start = end + 1;
+        }
+        result[fields - 1] = unquote(line.substring(start));
+        return result;
+    }
+
+    private static String unquote(String field) {
+        String trimmed = field.trim();
+        if (trimmed.length() >= 2 && trimmed.charAt(0) == '"' && trimmed.charAt(trimmed.length() - 1) == '"') {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    private static boolean isNumber(String field) {
+        try {
+            Long.parseLong(field);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package de.l3s.st_discovery.source;
+
+import de.l3s.st_discovery.graph.GraphFetcher;
+import de.l3s.st_discovery.util.configuration.Configuration;
+import de.l3s.st_discovery.util.configuration.ConfigurationParser;
+
+import java.io.File;
+
+/**
+ * Creates the graph and traffic data sources selected by dataSource
+ */
+public class DataSources {
+
+    public static void registerConfigEntries(ConfigurationParser cp) {
+        cp.addStringOption("dsrc", "dataSource", "Source of the input data, postgres (default) or file");
+        cp.addStringOption("dd", "dataDirectory", "Directory of the files of the file data source");
+    }
+
+    /**
+     * Returns whether the input data is read from files instead of the database
+     */
+    public static boolean isFileBased(Configuration config) {
+        String source = config.getStringOption("dataSource", "postgres");
+        switch (source) {
+            case "postgres":
+                return false;
+            case "file":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown data source: " + source);
+        }
+    }
+
+    public static File getDataDirectory(Configuration config) {
+        return new File(config.getStringOption("dataDirectory", "."));
+    }
+
+    public static GraphSource createGraphSource(Configuration config) {
+        return isFileBased(config) ? new FileGraphSource(config) : new GraphFetcher(config);
+    }
+
+    public static TrafficDataSource createTrafficDataSource(Configuration config) {
+        return isFileBased(config) ? new FileTrafficDataSource(config) : new PostgresTrafficDataSource(config);
+    }
+}
@@ -0,0 +1,126 @@
+package de.l3s.st_discovery.source;
+
+import de.l3s.st_discovery.graph.CompactGraph;
+import de.l3s.st_discovery.graph.GraphFetcher;
+import de.l3s.st_discovery.graph.GraphSnapshot;
+import de.l3s.st_discovery.graph.OutlierStore;
+import de.l3s.st_discovery.model.regiongrowing.Segment;
+import de.l3s.st_discovery.util.configuration.Configurable;
+import de.l3s.st_discovery.util.configuration.Configuration;
+import de.l3s.st_discovery.util.misc.LocalTimes;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Street network and outliers in the data directory.
+ *
+ * graph.csv (id, source, target, geometry as WKT in WGS84) is imported once into a {@link GraphSnapshot} and
+ * imported again whenever the csv file changes. Outliers are read from outliers.bin, written by the history engine
+ * or imported from outliers.csv (id, time).
+ */
+public class FileGraphSource extends Configurable implements GraphSource {
+
+    public static final String GRAPH_CSV = "graph.csv";
+    public static final String GRAPH_FILE = "graph.snapshot";
+    public static final String OUTLIER_CSV = "outliers.csv";
+
+    private File directory;
+
+    public FileGraphSource(Configuration config) {
+        super(config);
+        directory = DataSources.getDataDirectory(config);
+    }
+
+    @Override
+    public CompactGraph fetchGraph() throws IOException {
+        File csv = new File(directory, GRAPH_CSV);
+        File snapshotFile = new File(directory, GRAPH_FILE);
+        GraphSnapshot snapshot = new GraphSnapshot("file", GRAPH_CSV, "");
+        GeometryFactory geometryFactory = GraphFetcher.createGeometryFactory();
+
+        if (!ColumnarFile.isOutdated(snapshotFile, csv)) {
+            GraphSnapshot.Contents contents = snapshot.read(snapshotFile, geometryFactory);
+            System.out.println("Loaded street network from " + snapshotFile);
+            return CompactGraph.fromSegments(contents.segments);
+        }
+        if (!csv.exists()) {
+            throw new IOException("Neither " + snapshotFile + " nor " + csv + " exist");
+        }
+
+        System.out.println("Importing " + csv);
+        WKTReader reader = new WKTReader(geometryFactory);
+        List<Segment> segments = new ArrayList<>();
+        Csv.read(csv, 4, (fields, line) -> {
+            try {
+                segments.add(new Segment(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                        Integer.parseInt(fields[2]), -1, -1, reader.read(fields[3])));
+            } catch (ParseException e) {
+                throw new IOException(csv + ":" + line + ": invalid geometry", e);
+            }
+        });
+        CompactGraph graph = CompactGraph.fromSegments(segments);
+        snapshot.write(snapshotFile, graph);
+        System.out.println("Imported " + graph.getEdgeCount() + " streets into " + snapshotFile);
+        return graph;
+    }
+
+    /**
+     * Scans outliers.bin, which is ordered by time. Outliers of streets that are not part of the graph only
+     * register their time point.
+     */
+    @Override
+    public OutlierStore fetchOutliers(CompactGraph graph) throws IOException {
+        ColumnarFile file = ColumnarFile.open(importOutliers());
+        LongBuffer times = file.getLongColumn(0);
+        IntBuffer ids = file.getIntColumn(1);
+
+        OutlierStore.Builder builder = new OutlierStore.Builder();
+        long lastMicros = Long.MIN_VALUE, lastTime = 0;
+        for (int i = 0; i < file.getRowCount(); ++i) {
+            long micros = times.get(i);
+            if (micros != lastMicros) {
+                //epoch milliseconds of the local time stamp, like time stamps fetched from the database
+                lastTime = LocalTimes.toTimestamp(micros).getTime();
+                lastMicros = micros;
+            }
+            builder.add(lastTime, graph.edgeIndexOf(ids.get(i)));
+        }
+        return builder.build();
+    }
+
+    private File importOutliers() throws IOException {
+        File csv = new File(directory, OUTLIER_CSV);
+        File target = new File(directory, FileTrafficDataSource.OUTLIER_FILE);
+        if (!csv.exists() || !ColumnarFile.isOutdated(target, csv)) {
+            if (!target.exists()) {
+                throw new IOException("Neither " + target + " nor " + csv + " exist, identify the outliers first");
+            }
+            return target;
+        }
+
+        System.out.println("Importing " + csv);
+        List<long[]> rows = new ArrayList<>();
+        Csv.read(csv, 2, (fields, line) ->
+                rows.add(new long[]{LocalTimes.parse(fields[1]), Integer.parseInt(fields[0])}));
+        rows.sort((a, b) -> (a[0] != b[0]) ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+        long[] times = new long[rows.size()];
+        int[] ids = new int[rows.size()];
+        double[] speeds = new double[rows.size()];
+        for (int i = 0; i < rows.size(); ++i) {
+            times[i] = rows.get(i)[0];
+            ids[i] = (int) rows.get(i)[1];
+            speeds[i] = Double.NaN;
+        }
+        ColumnarFile.write(target, rows.size(), times, ids, speeds);
+        return target;
+    }
+}
@@ -0,0 +1,176 @@
+package de.l3s.st_discovery.source;
+
+import de.l3s.st_discovery.model.outlier.SpeedHistory;
+import de.l3s.st_discovery.output.OutlierWriter;
+import de.l3s.st_discovery.util.configuration.Configurable;
+import de.l3s.st_discovery.util.configuration.Configuration;
+import de.l3s.st_discovery.util.misc.LocalTimes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Speed records and outliers in the data directory.
+ *
+ * traffic.csv (id, time, speed) is imported once into the columnar file traffic.bin, ordered by time, and imported
+ * again whenever the csv file changes. Outliers are written to outliers.bin with the columns time, id and speed,
+ * ordered by time. Times are local time stamps like 2019-01-31 08:15:00, see {@link LocalTimes}.
+ */
+public class FileTrafficDataSource extends Configurable implements TrafficDataSource {
+
+    public static final String TRAFFIC_CSV = "traffic.csv";
+    public static final String TRAFFIC_FILE = "traffic.bin";
+    public static final String OUTLIER_FILE = "outliers.bin";
+
+    private static final int ROWS_PER_PART = 1 << 20;
+
+    private File directory;
+
+    public FileTrafficDataSource(Configuration config) {
+        super(config);
+        directory = DataSources.getDataDirectory(config);
+    }
+
+    /**
+     * Scans traffic.bin in parallel row ranges
+     */
+    @Override
+    public SpeedHistory loadHistory() throws IOException {
+        File trafficFile = importTraffic();
+        ColumnarFile file = ColumnarFile.open(trafficFile);
+        IntBuffer ids = file.getIntColumn(0);
+        LongBuffer times = file.getLongColumn(1);
+        DoubleBuffer speeds = file.getDoubleColumn(2);
+
+        int rows = file.getRowCount();
+        int partCount = (rows + ROWS_PER_PART - 1) / ROWS_PER_PART;
+        List<SpeedHistory.Part> parts = IntStream.range(0, partCount).parallel().mapToObj(p -> {
+            SpeedHistory.Part part = new SpeedHistory.Part();
+            int end = Math.min(rows, (p + 1) * ROWS_PER_PART);
+            for (int i = p * ROWS_PER_PART; i < end; ++i) {
+                part.add(ids.get(i), times.get(i), speeds.get(i));
+            }
+            return part;
+        }).collect(Collectors.toList());
+
+        return SpeedHistory.fromParts(parts);
+    }
+
+    private File importTraffic() throws IOException {
+        File csv = new File(directory, TRAFFIC_CSV);
+        File target = new File(directory, TRAFFIC_FILE);
+        if (!ColumnarFile.isOutdated(target, csv)) {
+            return target;
+        }
+        if (!csv.exists()) {
+            throw new IOException("Neither " + target + " nor " + csv + " exist");
+        }
+
+        System.out.println("Importing " + csv);
+        Records records = new Records();
+        Csv.read(csv, 3, (fields, line) -> {
+            if (fields[2].isEmpty()) return;
+            records.add(Integer.parseInt(fields[0]), LocalTimes.parse(fields[1]), Double.parseDouble(fields[2]));
+        });
+        records.sortByTime();
+
+        ColumnarFile.write(target, records.size, records.ids, records.times, records.speeds);
+        System.out.println("Imported " + records.size + " speed records into " + target);
+        return target;
+    }
+
+    /**
+     * Columns of the imported records
+     */
+    private static class Records {
+        int size;
+        int[] ids = new int[1024];
+        long[] times = new long[1024];
+        double[] speeds = new double[1024];
+
+        void add(int id, long time, double speed) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                times = Arrays.copyOf(times, size * 2);
+                speeds = Arrays.copyOf(speeds, size * 2);
+            }
+            ids[size] = id;
+            times[size] = time;
+            speeds[size] = speed;
+            ++size;
+        }
+
+        /**
+         * Orders the records by time, the history expects the records of every group in time order
+         */
+        void sortByTime() {
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; ++i) {
+                sorted = times[i - 1] <= times[i];
+            }
+            if (sorted) return;
+
+            Integer[] order = new Integer[size];
+            Arrays.setAll(order, i -> i);
+            Arrays.parallelSort(order, Comparator.comparingLong(i -> times[i]));
+            ids = permute(ids, order);
+            times = permute(times, order);
+            speeds = permute(speeds, order);
+        }
+    }
+
+    private static int[] permute(int[] values, Integer[] order) {
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; ++i) {
+            result[i] = values[order[i]];
+        }
+        return result;
+    }
+
+    private static long[] permute(long[] values, Integer[] order) {
+        long[] result = new long[order.length];
+        for (int i = 0; i < order.length; ++i) {
+            result[i] = values[order[i]];
+        }
+        return result;
+    }
+
+    private static double[] permute(double[] values, Integer[] order) {
+        double[] result = new double[order.length];
+        for (int i = 0; i < order.length; ++i) {
+            result[i] = values[order[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Replaces outliers.bin
+     */
+    @Override
+    public void writeOutliers(OutlierWriter.Rows outliers) throws IOException {
+        int size = outliers.size();
+        long[] micros = new long[size];
+        int[] ids = new int[size];
+        double[] speeds = new double[size];
+        for (int i = 0; i < size; ++i) {
+            micros[i] = LocalTimes.toMicros(outliers.getTime(i));
+            ids[i] = Math.toIntExact(outliers.getId(i));
+            speeds[i] = outliers.getSpeed(i);
+        }
+        Integer[] order = new Integer[size];
+        Arrays.setAll(order, i -> i);
+        Arrays.parallelSort(order, Comparator.<Integer>comparingLong(i -> micros[i]).thenComparingInt(i -> ids[i]));
+
+        File target = new File(directory, OUTLIER_FILE);
+        ColumnarFile.write(target, size, permute(micros, order), permute(ids, order), permute(speeds, order));
+        System.out.println("Wrote " + size + " outliers to " + target);
+    }
+}
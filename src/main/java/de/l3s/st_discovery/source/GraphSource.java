@@ -0,0 +1,20 @@
+package de.l3s.st_discovery.source;
+
+import de.l3s.st_discovery.graph.CompactGraph;
+import de.l3s.st_discovery.graph.OutlierStore;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Provides the street network and the outliers on it
+ */
+public interface GraphSource {
+
+    CompactGraph fetchGraph() throws SQLException, IOException;
+
+    /**
+     * @param graph Graph that provides the dense edge indices
+     */
+    OutlierStore fetchOutliers(CompactGraph graph) throws SQLException, IOException;
+}
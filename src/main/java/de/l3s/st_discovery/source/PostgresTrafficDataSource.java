@@ -0,0 +1,45 @@
+package de.l3s.st_discovery.source;
+
+import de.l3s.st_discovery.model.StreamingOutlierIdentifier;
+import de.l3s.st_discovery.model.outlier.SpeedHistory;
+import de.l3s.st_discovery.output.OutlierWriter;
+import de.l3s.st_discovery.util.configuration.Configurable;
+import de.l3s.st_discovery.util.configuration.Configuration;
+import de.l3s.st_discovery.util.db.PostgreDB;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+
+/**
+ * Reads the speed records from inputTable and writes the outliers to outlierTable
+ */
+public class PostgresTrafficDataSource extends Configurable implements TrafficDataSource {
+
+    public PostgresTrafficDataSource(Configuration config) {
+        super(config);
+    }
+
+    @Override
+    public SpeedHistory loadHistory() throws SQLException {
+        return SpeedHistory.load(config);
+    }
+
+    /**
+     * Replaces the outlier table in one transaction and resets the watermark of incremental runs
+     */
+    @Override
+    public void writeOutliers(OutlierWriter.Rows outliers) throws SQLException {
+        OutlierWriter writer = new OutlierWriter(config);
+        PostgreDB db = new PostgreDB(config);
+        try (Connection con = db.getConnection()) {
+            con.setAutoCommit(false);
+            writer.createTable(con);
+            StreamingOutlierIdentifier.resetWatermark(con, config.getStringOption("outlierTable"));
+            writer.write(con, Collections.singletonList(outliers));
+            con.commit();
+        } finally {
+            db.close();
+        }
+    }
+}
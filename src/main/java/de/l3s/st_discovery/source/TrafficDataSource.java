@@ -0,0 +1,20 @@
+package de.l3s.st_discovery.source;
+
+import de.l3s.st_discovery.model.outlier.SpeedHistory;
+import de.l3s.st_discovery.output.OutlierWriter;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Provides the speed records and stores the outliers identified in them
+ */
+public interface TrafficDataSource {
+
+    SpeedHistory loadHistory() throws SQLException, IOException;
+
+    /**
+     * Replaces the stored outliers
+     */
+    void writeOutliers(OutlierWriter.Rows outliers) throws SQLException, IOException;
+}
@@ -0,0 +1,188 @@
+package de.l3s.st_discovery.util.db;
+
+import de.l3s.st_discovery.util.configuration.Configurable;
+import de.l3s.st_discovery.util.configuration.Configuration;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Reads a large table through several pooled connections at once.
+ *
+ * The query is split into ranges of an id or time column. Every range is read on its own connection, at most
+ * dbMaxConnections at a time, and handed to a {@link PartitionReader}. The partial results are returned in
+ * range order, so results of ordered queries can simply be concatenated.
+ *
+ * Queries contain two parameters for the lower (inclusive) and upper (exclusive) bound of a range, e.g.
+ * <pre>select id, time from outliers where time &gt;= ? and time &lt; ? order by time</pre>
+ */
+public class PartitionedLoader extends Configurable {
+
+    private static final int PARTITIONS_PER_CONNECTION = 4;
+    private static final int FETCH_SIZE = 10000;
+
+    private int connections;
+
+    public PartitionedLoader(Configuration config) {
+        super(config);
+        connections = config.hasOption("dbMaxConnections") ? Math.max(1, config.getIntOption("dbMaxConnections")) : 1;
+    }
+
+    /**
+     * Reads the rows of one range
+     * @param <T> Partial result
+     */
+    public interface PartitionReader<T> {
+        /**
+         * @param rs Rows of the range
+         * @param partition Index of the range, ranges are numbered in ascending order
+         */
+        T read(ResultSet rs, int partition) throws SQLException;
+    }
+
+    /**
+     * Returns the smallest and largest value of an integer column
+     * @param column Column to partition on
+     * @param from From clause of the query including joins and where conditions
+     * @param params Values of the parameters in from
+     * @return min and max or null if there are no rows
+     */
+    public long[] fetchIdBounds(String column, String from, Object... params) throws SQLException {
+        PostgreDB db = new PostgreDB(config);
+        try (Connection con = db.getConnection();
+             PreparedStatement stmt = con.prepareStatement("select min(" + column + "), max(" + column + ") " + from)) {
+            bind(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getObject(1) == null) return null;
+                return new long[]{rs.getLong(1), rs.getLong(2)};
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Returns the first and last epoch millisecond of a timestamp column
+     * @param column Column to partition on
+     * @param from From clause of the query including joins and where conditions
+     * @return min and max or null if there are no rows
+     */
+    public long[] fetchTimeBounds(String column, String from) throws SQLException {
+        PostgreDB db = new PostgreDB(config);
+        try (Connection con = db.getConnection();
+             Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("select min(" + column + "), max(" + column + ") " + from)) {
+            if (!rs.next() || rs.getTimestamp(1) == null) return null;
+            return new long[]{rs.getTimestamp(1).getTime(), rs.getTimestamp(2).getTime()};
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Reads the query in ranges of an integer column
+     * @param query Query with a lower and upper bound parameter
+     * @param min Smallest id
+     * @param max Largest id
+     * @param params Values of the parameters before the bounds
+     */
+    public <T> List<T> loadIdRanges(String query, long min, long max, PartitionReader<T> reader,
+                                    Object... params) throws SQLException {
+        return load(query, min, max, false, reader, params);
+    }
+
+    /**
+     * Reads the query in ranges of a timestamp column
+     * @param query Query with a lower and upper bound parameter
+     * @param min First epoch millisecond
+     * @param max Last epoch millisecond
+     * @param params Values of the parameters before the bounds
+     */
+    public <T> List<T> loadTimeRanges(String query, long min, long max, PartitionReader<T> reader,
+                                      Object... params) throws SQLException {
+        return load(query, min, max, true, reader, params);
+    }
+
+    private <T> List<T> load(String query, long min, long max, boolean timestamps,
+                             PartitionReader<T> reader, Object... params) throws SQLException {
+        long[] bounds = split(min, max, (connections == 1) ? 1 : connections * PARTITIONS_PER_CONNECTION);
+        int partitions = bounds.length - 1;
+
+        PostgreDB db = new PostgreDB(config);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(connections, partitions));
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int p = 0; p < partitions; ++p) {
+                int partition = p;
+                futures.add(executor.submit(() -> {
+                    try (Connection con = db.getConnection()) {
+                        con.setAutoCommit(false);
+                        try (PreparedStatement stmt = con.prepareStatement(query)) {
+                            stmt.setFetchSize(FETCH_SIZE);
+                            bind(stmt, params);
+                            int first = params.length + 1;
+                            if (timestamps) {
+                                stmt.setTimestamp(first, new Timestamp(bounds[partition]));
+                                stmt.setTimestamp(first + 1, new Timestamp(bounds[partition + 1]));
+                            } else {
+                                stmt.setLong(first, bounds[partition]);
+                                stmt.setLong(first + 1, bounds[partition + 1]);
+                            }
+                            T result;
+                            try (ResultSet rs = stmt.executeQuery()) {
+                                result = reader.read(rs, partition);
+                            }
+                            con.commit();
+                            return result;
+                        }
+                    }
+                }));
+            }
+
+            List<T> results = new ArrayList<>(partitions);
+            for (Future<T> f : futures) {
+                results.add(f.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading partitions", e);
+        } finally {
+            executor.shutdownNow();
+            db.close();
+        }
+    }
+
+    private static void bind(PreparedStatement stmt, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; ++i) {
+            stmt.setObject(i + 1, params[i]);
+        }
+    }
+
+    /**
+     * Splits [min, max] into ranges of equal width
+     * @return Ascending bounds, range i is [bounds[i], bounds[i+1])
+     */
+    public static long[] split(long min, long max, int partitions) {
+        long upper = max + 1;
+        long width = Math.max(1, (upper - min + partitions - 1) / partitions);
+        List<Long> bounds = new ArrayList<>();
+        for (long b = min; b < upper; b += width) {
+            bounds.add(b);
+        }
+        bounds.add(upper);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+}
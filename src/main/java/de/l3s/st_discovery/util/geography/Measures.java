@@ -11,8 +11,24 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
 
+import java.util.Locale;
+
 public class Measures {
 
+    //latitude and longitude of the origin are filled in
+    private static final String LOCAL_TRANSVERSE_MERCATOR = "PROJCS[\"Local Transverse Mercator\","
+            + "GEOGCS[\"WGS 84\",DATUM[\"WGS_1984\",SPHEROID[\"WGS 84\",6378137,298.257223563]],"
+            + "PRIMEM[\"Greenwich\",0],UNIT[\"degree\",0.0174532925199433]],"
+            + "PROJECTION[\"Transverse_Mercator\"],"
+            + "PARAMETER[\"latitude_of_origin\",%f],PARAMETER[\"central_meridian\",%f],"
+            + "PARAMETER[\"scale_factor\",1],PARAMETER[\"false_easting\",0],PARAMETER[\"false_northing\",0],"
+            + "UNIT[\"metre\",1]]";
+
+    /**
+     * Returns the distance in meters of two WGS84 geometries, projected with the transform of the tile
+     * containing their midpoint. The error bound is given in {@link ProjectionService}, geometries far outside
+     * the tile have a larger error.
+     */
     public static double distance(Geometry lhs, Geometry rhs) {
         Point lhsCenter = lhs.getCentroid();
         Point rhsCenter = rhs.getCentroid();
@@ -21,9 +37,7 @@ public class Measures {
         double projectionY = (lhsCenter.getY() + rhsCenter.getY()) / 2;
 
         try {
-            String autoString = "AUTO2:42001,"+projectionX+","+projectionY;
-            CoordinateReferenceSystem auto = CRS.decode(autoString);
-            MathTransform transform = CRS.findMathTransform(DefaultGeographicCRS.WGS84, auto);
+            MathTransform transform = ProjectionService.tileTransform(projectionX, projectionY);
 
             Geometry lhsTrans = JTS.transform(lhs, transform);
             Geometry rhsTrans = JTS.transform(rhs, transform);
@@ -37,4 +51,15 @@ public class Measures {
 
     }
 
+    /**
+     * Returns the transform from WGS84 to a transverse mercator projection in meters centered at a position.
+     * The scale is exact on the central meridian. AUTO2:42001 would use the meridian of the UTM zone and its
+     * scale factor of 0.9996 instead, which shrinks distances by up to 0.04%.
+     */
+    public static MathTransform metricTransform(double longitude, double latitude) throws FactoryException {
+        CoordinateReferenceSystem local = CRS.parseWKT(String.format(Locale.ROOT, LOCAL_TRANSVERSE_MERCATOR,
+                latitude, longitude));
+        return CRS.findMathTransform(DefaultGeographicCRS.WGS84, local, true);
+    }
+
 }
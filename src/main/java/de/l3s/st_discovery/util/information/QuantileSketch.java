@@ -0,0 +1,213 @@
+package de.l3s.st_discovery.util.information;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch following KLL (Karnin, Lang, Liberty).
+ *
+ * Values are kept in a hierarchy of compactors, an item on level h stands for 2^h values. A level that exceeds
+ * its capacity is sorted and every other item is promoted to the next level. Capacities shrink by 2/3 per level
+ * below the top one, which is k. As long as no compaction happened the sketch holds all values and quantiles
+ * are exact. Compaction alternates between odd and even items, so results are deterministic.
+ */
+public class QuantileSketch {
+
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+
+    private final int k;
+    private float[][] levels;
+    private int[] sizes;
+    private int levelCount;
+    private long count;
+    private boolean oddOffset;
+
+    public QuantileSketch(int k) {
+        if (k < MIN_CAPACITY) {
+            throw new IllegalArgumentException("k must be at least " + MIN_CAPACITY);
+        }
+        this.k = k;
+        levels = new float[1][8];
+        sizes = new int[1];
+        levelCount = 1;
+    }
+
+    public void update(float value) {
+        append(0, value);
+        ++count;
+        if (sizes[0] >= capacity(0)) {
+            compress();
+        }
+    }
+
+    /**
+     * Adds the values of another sketch, both sketches have to use the same k
+     */
+    public void merge(QuantileSketch other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("Sketches use different k");
+        }
+        for (int h = 0; h < other.levelCount; ++h) {
+            for (int i = 0; i < other.sizes[h]; ++i) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        compress();
+    }
+
+    /**
+     * Returns the number of values added to the sketch
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Estimates a quantile with linear interpolation between ranks, like percentile_cont
+     * @param q Fraction between 0 and 1
+     * @return The quantile or NaN for an empty sketch
+     */
+    public double quantile(double q) {
+        if (count == 0) return Double.NaN;
+
+        int items = 0;
+        for (int h = 0; h < levelCount; ++h) {
+            items += sizes[h];
+        }
+        //sort (value, weight) pairs by value, weights are powers of two below 2^32
+        long[] weighted = new long[items];
+        int pos = 0;
+        for (int h = 0; h < levelCount; ++h) {
+            for (int i = 0; i < sizes[h]; ++i) {
+                weighted[pos++] = (((long) sortableBits(levels[h][i])) << 32) | (1L << h);
+            }
+        }
+        Arrays.sort(weighted);
+
+        double rank = q * (count - 1);
+        long lower = (long) Math.floor(rank);
+        long upper = (long) Math.ceil(rank);
+        float lowerValue = valueAt(weighted, lower);
+        float upperValue = (upper == lower) ? lowerValue : valueAt(weighted, upper);
+        return lowerValue + (rank - lower) * ((double) upperValue - lowerValue);
+    }
+
+    private static float valueAt(long[] weighted, long rank) {
+        long cumulative = 0;
+        for (long entry : weighted) {
+            cumulative += entry & 0xFFFFFFFFL;
+            if (rank < cumulative) {
+                return fromSortableBits((int) (entry >>> 32));
+            }
+        }
+        return fromSortableBits((int) (weighted[weighted.length - 1] >>> 32));
+    }
+
+    /**
+     * Maps a float to an int whose order matches the order of the floats, the mapping is its own inverse
+     */
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return (bits < 0) ? bits ^ Integer.MAX_VALUE : bits;
+    }
+
+    private static float fromSortableBits(int sortable) {
+        int bits = (sortable < 0) ? sortable ^ Integer.MAX_VALUE : sortable;
+        return Float.intBitsToFloat(bits);
+    }
+
+    /**
+     * Serializes the sketch, e.g. to store it between runs
+     */
+    public byte[] toBytes() {
+        int items = 0;
+        for (int h = 0; h < levelCount; ++h) {
+            items += sizes[h];
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 8 + 1 + 4 + 4 * levelCount + 4 * items);
+        buffer.putInt(k);
+        buffer.putLong(count);
+        buffer.put((byte) (oddOffset ? 1 : 0));
+        buffer.putInt(levelCount);
+        for (int h = 0; h < levelCount; ++h) {
+            buffer.putInt(sizes[h]);
+            for (int i = 0; i < sizes[h]; ++i) {
+                buffer.putFloat(levels[h][i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Restores a sketch written by {@link #toBytes()}
+     */
+    public static QuantileSketch fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        QuantileSketch sketch = new QuantileSketch(buffer.getInt());
+        sketch.count = buffer.getLong();
+        sketch.oddOffset = buffer.get() != 0;
+        int levelCount = buffer.getInt();
+        sketch.levels = new float[Math.max(1, levelCount)][];
+        sketch.sizes = new int[Math.max(1, levelCount)];
+        sketch.levelCount = levelCount;
+        for (int h = 0; h < levelCount; ++h) {
+            int size = buffer.getInt();
+            sketch.levels[h] = new float[Math.max(8, size)];
+            sketch.sizes[h] = size;
+            for (int i = 0; i < size; ++i) {
+                sketch.levels[h][i] = buffer.getFloat();
+            }
+        }
+        return sketch;
+    }
+
+    private int capacity(int level) {
+        int depth = levelCount - level - 1;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private void append(int level, float value) {
+        while (level >= levelCount) {
+            addLevel();
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    private void addLevel() {
+        if (levelCount == levels.length) {
+            levels = Arrays.copyOf(levels, levelCount * 2);
+            sizes = Arrays.copyOf(sizes, levelCount * 2);
+        }
+        levels[levelCount] = new float[8];
+        sizes[levelCount] = 0;
+        ++levelCount;
+    }
+
+    /**
+     * Compacts every level that exceeds its capacity, starting at the bottom
+     */
+    private void compress() {
+        for (int h = 0; h < levelCount; ++h) {
+            if (sizes[h] < capacity(h)) continue;
+
+            float[] level = levels[h];
+            int size = sizes[h];
+            Arrays.sort(level, 0, size);
+
+            //an odd item stays on its level, so the total weight is preserved
+            int start = size % 2;
+            int offset = oddOffset ? 1 : 0;
+            oddOffset = !oddOffset;
+            for (int i = start + offset; i < size; i += 2) {
+                append(h + 1, level[i]);
+            }
+            //append may have grown the level array, the current level is untouched
+            sizes[h] = start;
+        }
+    }
+}
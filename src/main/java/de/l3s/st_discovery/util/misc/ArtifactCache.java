@@ -0,0 +1,45 @@
+package de.l3s.st_discovery.util.misc;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Keeps the results of pipeline stages for the duration of one run.
+ *
+ * A result is keyed by the name of the stage and the inputs it depends on, so configurations that agree on
+ * these inputs share the result instead of computing it again.
+ */
+public class ArtifactCache {
+
+    /**
+     * Computes the result of a stage
+     */
+    public interface Stage<T> {
+        T compute() throws SQLException, IOException;
+    }
+
+    private Map<List<Object>, Object> artifacts = new HashMap<>();
+
+    /**
+     * Returns the result of a stage, computing it if no earlier configuration did with the same inputs
+     * @param stage Name of the stage
+     * @param inputs Values the result depends on
+     * @param compute Computes the result on a miss
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String stage, List<?> inputs, Stage<T> compute) throws SQLException, IOException {
+        List<Object> key = new ArrayList<>(inputs.size() + 1);
+        key.add(stage);
+        key.addAll(inputs);
+
+        if (artifacts.containsKey(key)) {
+            System.out.println("Reusing " + stage + " of an earlier configuration");
+            return (T) artifacts.get(key);
+        }
+
+        T result = compute.compute();
+        artifacts.put(key, result);
+        return result;
+    }
+}
@@ -0,0 +1,52 @@
+package de.l3s.st_discovery.util.misc;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Conversions for time stamps without time zone, stored as microseconds since 1970-01-01T00:00.
+ *
+ * The microseconds count local wall clock time, so day of week and time of day can be derived without a zone.
+ */
+public class LocalTimes {
+
+    private static final long MICROS_PER_SECOND = 1_000_000L;
+    private static final long MICROS_PER_DAY = 86_400L * MICROS_PER_SECOND;
+
+    public static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * MICROS_PER_SECOND + time.getNano() / 1000;
+    }
+
+    public static long toMicros(Timestamp time) {
+        return toMicros(time.toLocalDateTime());
+    }
+
+    public static LocalDateTime toLocalDateTime(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, MICROS_PER_SECOND),
+                (int) Math.floorMod(micros, MICROS_PER_SECOND) * 1000, ZoneOffset.UTC);
+    }
+
+    public static Timestamp toTimestamp(long micros) {
+        return Timestamp.valueOf(toLocalDateTime(micros));
+    }
+
+    /**
+     * Parses time stamps like 2019-01-31 08:15:00 or 2019-01-31T08:15:00.5
+     */
+    public static long parse(String time) {
+        return toMicros(LocalDateTime.parse(time.trim().replace(' ', 'T')));
+    }
+
+    /**
+     * Returns the ISO day of week, 1 is Monday
+     */
+    public static int dayOfWeek(long micros) {
+        //1970-01-01 was a Thursday
+        return (int) Math.floorMod(Math.floorDiv(micros, MICROS_PER_DAY) + 3, 7L) + 1;
+    }
+
+    public static long microOfDay(long micros) {
+        return Math.floorMod(micros, MICROS_PER_DAY);
+    }
+}
@@ -0,0 +1,51 @@
+package de.l3s.st_discovery;
+
+import de.l3s.st_discovery.util.configuration.TestConfigurations;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ApplicationTest {
+
+    private static final List<String> BASE = Arrays.asList("--inputTable", "speeds", "--outlierTable", "outliers",
+            "--idColumn", "id", "--speedColumn", "speed", "--timeColumn", "time", "--graphTable", "streets",
+            "--subgraphTable", "regions", "--subgraphName", "city", "--thSim", "0.4", "--thdmin", "500");
+
+    static LinkedHashMap<String, Object> columns(String... args) {
+        List<String> all = new ArrayList<>(BASE);
+        all.addAll(Arrays.asList(args));
+        return Application.configColumns(TestConfigurations.parse(all.toArray(new String[0])));
+    }
+
+    @Test
+    public void defaultsMatchUnsetOptions() {
+        assertEquals(columns(), columns("--outlierDetector", "tukey", "--outlierThreshold", "1.5",
+                "--temporalGap", "0", "--lshCandidates", "false", "--minHashSize", "128", "--distanceEngine", "jvm"));
+    }
+
+    @Test
+    public void optionsChangingResultsChangeTheKey() {
+        LinkedHashMap<String, Object> defaults = columns();
+        String[][] variants = {
+                {"--outlierEngine", "history"},
+                {"--outlierDetector", "mad"},
+                {"--outlierThreshold", "2"},
+                {"--temporalGap", "300"},
+                {"--dSkipLevels", "0;1;2"},
+                {"--lshCandidates", "true"},
+                {"--minHashSize", "64"},
+                {"--mergeDendrogram", "dendrogram.bin"},
+                {"--distanceEngine", "sql"},
+                {"--dSkip", "3"}
+        };
+        for (String[] variant : variants) {
+            assertNotEquals(variant[0], defaults, columns(variant));
+        }
+    }
+}
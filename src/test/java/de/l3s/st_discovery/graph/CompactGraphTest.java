@@ -0,0 +1,102 @@
+package de.l3s.st_discovery.graph;
+
+import de.l3s.st_discovery.model.regiongrowing.LabeledDefaultEdge;
+import de.l3s.st_discovery.model.regiongrowing.Segment;
+import org.jgrapht.Graph;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactGraphTest {
+
+    /**
+     * Random segments without loops and parallel segments, node ids are multiples of 3
+     */
+    static List<Segment> randomSegments(int vertices, int segments, long seed) {
+        Random random = new Random(seed);
+        Set<Long> pairs = new HashSet<>();
+        List<Segment> result = new ArrayList<>();
+        for (int i = 0; i < segments; ++i) {
+            int source = random.nextInt(vertices);
+            int target = random.nextInt(vertices);
+            if (source == target || !pairs.add(((long) source << 32) | target)) continue;
+            result.add(new Segment(i + 1, source * 3, target * 3, 0, 0, null));
+        }
+        return result;
+    }
+
+    @Test
+    public void matchesJgraphtGraph() {
+        CompactGraph graph = CompactGraph.fromSegments(randomSegments(200, 700, 1));
+        Graph<Integer, LabeledDefaultEdge> g = graph.asGraph();
+        assertEquals(g.vertexSet().size(), graph.getVertexCount());
+        assertEquals(g.edgeSet().size(), graph.getEdgeCount());
+
+        for (int v = 0; v < graph.getVertexCount(); ++v) {
+            int nodeId = graph.getNodeId(v);
+            assertTrue(v == 0 || graph.getNodeId(v - 1) < nodeId);
+            assertEquals(v, graph.vertexIndexOf(nodeId));
+
+            Set<Integer> expected = new HashSet<>();
+            for (LabeledDefaultEdge edge : g.outgoingEdgesOf(nodeId)) {
+                expected.add(edge.label);
+            }
+            Set<Integer> actual = new HashSet<>();
+            for (int e = graph.outgoingStart(v); e < graph.outgoingEnd(v); ++e) {
+                assertEquals(v, graph.getEdgeSource(e));
+                assertTrue(e == graph.outgoingStart(v) || graph.getEdgeTarget(e - 1) <= graph.getEdgeTarget(e));
+                actual.add(graph.getLabel(e));
+            }
+            assertEquals("vertex " + v, expected, actual);
+        }
+
+        for (int e = 0; e < graph.getEdgeCount(); ++e) {
+            LabeledDefaultEdge edge = graph.getEdge(e);
+            assertEquals(e, edge.index);
+            assertEquals(edge.label, graph.getLabel(e));
+            assertEquals(edge.node_source, graph.getNodeId(graph.getEdgeSource(e)));
+            assertEquals(edge.node_sink, graph.getNodeId(graph.getEdgeTarget(e)));
+            assertEquals(e, graph.edgeIndexOf(edge.label));
+        }
+        assertEquals(-1, graph.vertexIndexOf(1));
+        assertEquals(-1, graph.edgeIndexOf(0));
+    }
+
+    @Test
+    public void keepsFirstOfParallelSegments() {
+        CompactGraph graph = CompactGraph.fromSegments(Arrays.asList(
+                new Segment(7, 1, 2, 0, 0, null),
+                new Segment(8, 1, 2, 0, 0, null),
+                new Segment(9, 2, 1, 0, 0, null)));
+
+        assertEquals(2, graph.getEdgeCount());
+        assertEquals(0, graph.edgeIndexOf(7));
+        assertEquals(-1, graph.edgeIndexOf(8));
+        assertEquals(1, graph.edgeIndexOf(9));
+        assertSame(graph.getEdge(0), graph.asGraph().outgoingEdgesOf(1).iterator().next());
+    }
+
+    @Test
+    public void fingerprintIgnoresSegmentOrder() {
+        List<Segment> segments = randomSegments(100, 300, 2);
+        long fingerprint = CompactGraph.fromSegments(segments).fingerprint();
+
+        Collections.shuffle(segments, new Random(3));
+        assertEquals(fingerprint, CompactGraph.fromSegments(segments).fingerprint());
+
+        Segment last = segments.remove(segments.size() - 1);
+        segments.add(new Segment(last.id + 1000, last.sourceNodeId, last.targetNodeId, 0, 0, null));
+        assertNotEquals(fingerprint, CompactGraph.fromSegments(segments).fingerprint());
+    }
+}
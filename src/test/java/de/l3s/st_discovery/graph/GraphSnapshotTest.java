@@ -0,0 +1,75 @@
+package de.l3s.st_discovery.graph;
+
+import de.l3s.st_discovery.model.regiongrowing.Segment;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+public class GraphSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws IOException {
+        CompactGraph graph = TestGraphs.random(300, 1000, 1);
+        File file = new File(folder.getRoot(), "graph.snapshot");
+        GraphSnapshot snapshot = new GraphSnapshot("streets", "subgraphs", "city");
+        snapshot.write(file, graph);
+        assertArrayEquals(new File[]{file}, folder.getRoot().listFiles());
+
+        GraphSnapshot.Contents contents = snapshot.read(file, new GeometryFactory());
+        assertEquals(graph.fingerprint(), contents.fingerprint);
+        assertEquals(graph.getVertexCount(), contents.nodeIds.length);
+        for (int v = 0; v < graph.getVertexCount(); ++v) {
+            assertEquals(graph.getNodeId(v), contents.nodeIds[v]);
+        }
+        assertEquals(graph.getEdgeCount(), contents.segments.size());
+        for (int e = 0; e < graph.getEdgeCount(); ++e) {
+            Segment segment = contents.segments.get(e);
+            assertEquals(graph.getLabel(e), segment.id);
+            assertEquals(graph.getNodeId(graph.getEdgeSource(e)), segment.sourceNodeId);
+            assertEquals(graph.getNodeId(graph.getEdgeTarget(e)), segment.targetNodeId);
+            assertNull(segment.geom);
+        }
+
+        CompactGraph restored = CompactGraph.fromSegments(contents.segments);
+        assertEquals(graph.fingerprint(), restored.fingerprint());
+        for (int e = 0; e < graph.getEdgeCount(); ++e) {
+            assertEquals(graph.getLabel(e), restored.getLabel(e));
+        }
+    }
+
+    @Test
+    public void rejectsSnapshotsOfOtherGraphs() throws IOException {
+        File file = new File(folder.getRoot(), "graph.snapshot");
+        new GraphSnapshot("streets", "subgraphs", "city").write(file, TestGraphs.cycle(5));
+
+        assertThrows(IOException.class, () ->
+                new GraphSnapshot("streets", "subgraphs", "region").read(file, new GeometryFactory()));
+        assertThrows(IOException.class, () ->
+                new GraphSnapshot("roads", "subgraphs", "city").read(file, new GeometryFactory()));
+    }
+
+    @Test
+    public void rejectsTruncatedSnapshots() throws IOException {
+        File file = new File(folder.getRoot(), "graph.snapshot");
+        GraphSnapshot snapshot = new GraphSnapshot("streets", "subgraphs", "city");
+        snapshot.write(file, TestGraphs.random(50, 100, 2));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() / 2);
+        }
+
+        assertThrows(IOException.class, () -> snapshot.read(file, new GeometryFactory()));
+    }
+}
@@ -0,0 +1,60 @@
+package de.l3s.st_discovery.graph;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThrows;
+
+public class HopDistanceEngineTest {
+
+    /**
+     * Hop bounded breadth first search from a single source
+     * @return Sorted entries (vertex << 8 | hops)
+     */
+    static long[] bfs(CompactGraph graph, int source, int maxHops) {
+        int[] hops = new int[graph.getVertexCount()];
+        Arrays.fill(hops, -1);
+        hops[source] = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(source);
+        long[] row = new long[graph.getVertexCount()];
+        int size = 0;
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            row[size++] = (((long) u) << 8) | hops[u];
+            if (hops[u] == maxHops) continue;
+            for (int e = graph.outgoingStart(u); e < graph.outgoingEnd(u); ++e) {
+                int v = graph.getEdgeTarget(e);
+                if (hops[v] < 0) {
+                    hops[v] = hops[u] + 1;
+                    queue.add(v);
+                }
+            }
+        }
+        row = Arrays.copyOf(row, size);
+        Arrays.sort(row);
+        return row;
+    }
+
+    @Test
+    public void matchesSingleSourceSearch() {
+        //several batches of 64 sources, the last one incomplete
+        CompactGraph graph = TestGraphs.random(1000, 2500, 5);
+        for (int maxHops = 0; maxHops <= 4; ++maxHops) {
+            long[][] rows = new HopDistanceEngine(graph, maxHops).computeRows();
+            for (int source = 0; source < graph.getVertexCount(); ++source) {
+                assertArrayEquals("source " + source + " within " + maxHops,
+                        bfs(graph, source, maxHops), rows[source]);
+            }
+        }
+    }
+
+    @Test
+    public void rejectsHopsBeyondByte() {
+        CompactGraph graph = TestGraphs.cycle(3);
+        assertThrows(IllegalArgumentException.class, () -> new HopDistanceEngine(graph, 128));
+    }
+}
@@ -0,0 +1,127 @@
+package de.l3s.st_discovery.graph;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class OutlierStoreTest {
+
+    /**
+     * Rows of 100 time points in time order, -1 registers a time point without outlier edges
+     */
+    static List<long[]> randomRows(long seed) {
+        Random random = new Random(seed);
+        List<long[]> rows = new ArrayList<>();
+        long time = 0;
+        for (int t = 0; t < 100; ++t) {
+            time += 1 + random.nextInt(3) * 60000L;
+            int count = random.nextInt(8);
+            if (count == 0) {
+                rows.add(new long[]{time, -1});
+            }
+            for (int k = 0; k < count; ++k) {
+                rows.add(new long[]{time, random.nextInt(30)});
+            }
+        }
+        return rows;
+    }
+
+    static OutlierStore build(List<long[]> rows) {
+        OutlierStore.Builder builder = new OutlierStore.Builder();
+        for (long[] row : rows) {
+            builder.add(row[0], (int) row[1]);
+        }
+        return builder.build();
+    }
+
+    static void assertStore(TreeMap<Long, TreeSet<Integer>> expected, OutlierStore store) {
+        assertEquals(expected.size(), store.size());
+        int t = 0, outliers = 0;
+        for (Long time : expected.keySet()) {
+            assertEquals(time.longValue(), store.getTime(t));
+            assertEquals(t, store.indexOf(time));
+            int[] edges = expected.get(time).stream().mapToInt(Integer::intValue).toArray();
+            assertArrayEquals("time " + time, edges, store.getEdges(t));
+            assertEquals(edges.length, store.end(t) - store.start(t));
+            for (int i = 0; i < edges.length; ++i) {
+                assertEquals(edges[i], store.edgeAt(store.start(t) + i));
+            }
+            outliers += edges.length;
+            ++t;
+        }
+        assertEquals(outliers, store.getOutlierCount());
+    }
+
+    @Test
+    public void builderSortsAndDeduplicatesEdges() {
+        for (long seed = 1; seed <= 20; ++seed) {
+            List<long[]> rows = randomRows(seed);
+            TreeMap<Long, TreeSet<Integer>> expected = new TreeMap<>();
+            for (long[] row : rows) {
+                TreeSet<Integer> edges = expected.computeIfAbsent(row[0], time -> new TreeSet<>());
+                if (row[1] >= 0) {
+                    edges.add((int) row[1]);
+                }
+            }
+            OutlierStore store = build(rows);
+            assertStore(expected, store);
+            assertEquals(-1, store.indexOf(-5));
+        }
+    }
+
+    @Test
+    public void builderRejectsUnorderedTimes() {
+        OutlierStore.Builder builder = new OutlierStore.Builder();
+        builder.add(60000L, 3);
+        builder.add(60000L, 1);
+        assertThrows(IllegalArgumentException.class, () -> builder.add(0L, 2));
+    }
+
+    @Test
+    public void concatMatchesSingleBuilder() {
+        for (long seed = 1; seed <= 20; ++seed) {
+            List<long[]> rows = randomRows(seed);
+            OutlierStore expected = build(rows);
+
+            //cut between time points, like the partitions of the time range
+            Random random = new Random(seed);
+            List<OutlierStore> parts = new ArrayList<>();
+            int from = 0;
+            for (int i = 1; i <= rows.size(); ++i) {
+                if (i == rows.size() || (rows.get(i)[0] != rows.get(i - 1)[0] && random.nextInt(10) == 0)) {
+                    parts.add(build(rows.subList(from, i)));
+                    from = i;
+                }
+                if (random.nextInt(30) == 0) {
+                    parts.add(build(Collections.emptyList()));
+                }
+            }
+            OutlierStore actual = OutlierStore.concat(parts);
+
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected.getOutlierCount(), actual.getOutlierCount());
+            for (int t = 0; t < expected.size(); ++t) {
+                assertEquals(expected.getTime(t), actual.getTime(t));
+                assertEquals(expected.start(t), actual.start(t));
+                assertArrayEquals(expected.getEdges(t), actual.getEdges(t));
+            }
+        }
+    }
+
+    @Test
+    public void concatRejectsOverlappingParts() {
+        OutlierStore first = build(Arrays.asList(new long[]{0, 1}, new long[]{60000, 2}));
+        OutlierStore second = build(Collections.singletonList(new long[]{60000, 3}));
+        assertThrows(IllegalArgumentException.class, () -> OutlierStore.concat(Arrays.asList(first, second)));
+    }
+}
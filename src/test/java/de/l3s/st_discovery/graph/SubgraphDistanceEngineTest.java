@@ -0,0 +1,136 @@
+package de.l3s.st_discovery.graph;
+
+import de.l3s.st_discovery.model.regiongrowing.LabeledDefaultEdge;
+import de.l3s.st_discovery.util.geography.Measures;
+import org.geotools.referencing.GeodeticCalculator;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.ToDoubleBiFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SubgraphDistanceEngineTest {
+
+    private static final GeometryFactory FACTORY = new GeometryFactory();
+
+    /**
+     * Creates subgraphs of 1 to 20 streets, spread over about 20 x 20 km
+     * @param street Creates the geometry of a street near a WGS84 position
+     */
+    static List<Subgraph> subgraphs(int count, long seed, Function<Coordinate, Geometry> street) {
+        Random random = new Random(seed);
+        List<Subgraph> result = new ArrayList<>();
+        int index = 0;
+        for (int i = 0; i < count; ++i) {
+            double longitude = 9.6 + random.nextDouble() * 0.3;
+            double latitude = 52.3 + random.nextDouble() * 0.2;
+            Subgraph subgraph = new Subgraph();
+            int size = 1 + random.nextInt(20);
+            for (int k = 0; k < size; ++k) {
+                LabeledDefaultEdge edge = TestSubgraphs.edge(index++);
+                edge.setGeometry(street.apply(new Coordinate(longitude + random.nextDouble() * 0.01,
+                        latitude + random.nextDouble() * 0.01)));
+                subgraph.addEdge(edge);
+            }
+            result.add(subgraph);
+        }
+        return result;
+    }
+
+    static Geometry line(Coordinate start) {
+        return FACTORY.createLineString(new Coordinate[]{start, new Coordinate(start.x + 0.002, start.y - 0.001)});
+    }
+
+    /**
+     * Minimum over all pairs of streets
+     */
+    static double pairwise(Subgraph lhs, Subgraph rhs, ToDoubleBiFunction<Geometry, Geometry> distance) {
+        double result = Double.POSITIVE_INFINITY;
+        for (LabeledDefaultEdge l : lhs) {
+            for (LabeledDefaultEdge r : rhs) {
+                result = Math.min(result, distance.applyAsDouble(l.getGeometry(), r.getGeometry()));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void matchesPairwiseDistances() throws Exception {
+        //subgraphs with more than 64 pairs of streets are searched with STR-trees
+        List<Subgraph> subgraphs = subgraphs(40, 21, SubgraphDistanceEngineTest::line);
+        SubgraphDistanceEngine engine = SubgraphDistanceEngine.create(subgraphs);
+
+        for (int i = 0; i < subgraphs.size(); ++i) {
+            for (int j = i + 1; j < subgraphs.size(); ++j) {
+                double expected = pairwise(subgraphs.get(i), subgraphs.get(j), Measures::distance);
+                assertEquals("pair " + i + "," + j, expected,
+                        engine.distance(subgraphs.get(i), subgraphs.get(j)), 1e-4 * expected + 0.01);
+            }
+        }
+    }
+
+    /**
+     * Point streets can be compared with the geodesic distance on the ellipsoid, like st_distance on geography
+     */
+    @Test
+    public void matchesGeodesicDistances() throws Exception {
+        List<Subgraph> subgraphs = subgraphs(30, 22, FACTORY::createPoint);
+        SubgraphDistanceEngine engine = SubgraphDistanceEngine.create(subgraphs);
+        GeodeticCalculator calculator = new GeodeticCalculator(DefaultGeographicCRS.WGS84);
+
+        for (int i = 0; i < subgraphs.size(); ++i) {
+            for (int j = i + 1; j < subgraphs.size(); ++j) {
+                double expected = pairwise(subgraphs.get(i), subgraphs.get(j), (lhs, rhs) -> {
+                    calculator.setStartingGeographicPoint(((Point) lhs).getX(), ((Point) lhs).getY());
+                    calculator.setDestinationGeographicPoint(((Point) rhs).getX(), ((Point) rhs).getY());
+                    return calculator.getOrthodromicDistance();
+                });
+                assertEquals("pair " + i + "," + j, expected,
+                        engine.distance(subgraphs.get(i), subgraphs.get(j)), 1e-4 * expected + 0.01);
+            }
+        }
+    }
+
+    @Test
+    public void withinDistanceMatchesDistances() throws Exception {
+        List<Subgraph> subgraphs = subgraphs(40, 24, SubgraphDistanceEngineTest::line);
+        SubgraphDistanceEngine engine = SubgraphDistanceEngine.create(subgraphs);
+
+        for (int i = 0; i < subgraphs.size(); ++i) {
+            for (int j = i + 1; j < subgraphs.size(); ++j) {
+                double distance = engine.distance(subgraphs.get(i), subgraphs.get(j));
+                for (double meters : new double[]{distance - 1, distance + 1, 1000, 5000}) {
+                    assertEquals("pair " + i + "," + j + " within " + meters, distance <= meters,
+                            engine.isWithinDistance(subgraphs.get(i), subgraphs.get(j), meters));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sharedStreetsAndMissingGeometries() throws Exception {
+        List<Subgraph> subgraphs = subgraphs(2, 23, SubgraphDistanceEngineTest::line);
+        Subgraph sharing = subgraphs.get(1).copy();
+        sharing.addEdge(subgraphs.get(0).iterator().next());
+        Subgraph withoutGeometry = TestSubgraphs.of(1000, 1001);
+        subgraphs.add(sharing);
+        subgraphs.add(withoutGeometry);
+        SubgraphDistanceEngine engine = SubgraphDistanceEngine.create(subgraphs);
+
+        assertEquals(0.0, engine.distance(subgraphs.get(0), sharing), 0);
+        assertEquals(-1.0, engine.distance(subgraphs.get(0), withoutGeometry), 0);
+        assertTrue(engine.isWithinDistance(subgraphs.get(0), sharing, 0));
+        assertFalse(engine.isWithinDistance(subgraphs.get(0), withoutGeometry, 1e9));
+    }
+}
@@ -0,0 +1,92 @@
+package de.l3s.st_discovery.graph;
+
+import de.l3s.st_discovery.model.regiongrowing.LabeledDefaultEdge;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class SubgraphTest {
+
+    static Set<Integer> indices(Subgraph subgraph) {
+        Set<Integer> result = new TreeSet<>();
+        for (LabeledDefaultEdge edge : subgraph) {
+            result.add(edge.index);
+        }
+        return result;
+    }
+
+    @Test
+    public void matchesSetOperations() {
+        Random random = new Random(5);
+        List<Subgraph> subgraphs = TestSubgraphs.random(200, 60, 5);
+        for (int n = 0; n < 2000; ++n) {
+            Subgraph lhs = subgraphs.get(random.nextInt(subgraphs.size()));
+            Subgraph rhs = subgraphs.get(random.nextInt(subgraphs.size()));
+            Set<Integer> shared = new HashSet<>(indices(lhs));
+            shared.retainAll(indices(rhs));
+            Set<Integer> union = new TreeSet<>(indices(lhs));
+            union.addAll(indices(rhs));
+
+            assertEquals(shared.size(), lhs.intersectionSize(rhs));
+            assertEquals(shared, indices(lhs.intersection(rhs)));
+            assertEquals(union, indices(lhs.union(rhs)));
+            assertEquals(((double) shared.size()) / union.size(), lhs.jaccard(rhs), 1e-12);
+            assertEquals(indices(rhs).containsAll(indices(lhs)), lhs.isSubsetOf(rhs));
+
+            Subgraph merged = lhs.copy();
+            merged.addAll(rhs);
+            assertEquals(union, indices(merged));
+            assertEquals(union.size(), merged.size());
+        }
+    }
+
+    @Test
+    public void keepsEdgesSortedByIndex() {
+        Subgraph subgraph = TestSubgraphs.of(9, 3, 7, 3, 1);
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < subgraph.size(); ++i) {
+            order.add(subgraph.getEdgeIndex(i));
+        }
+        assertEquals(List.of(1, 3, 7, 9), order);
+        assertEquals(new ArrayList<>(order), new ArrayList<>(indices(subgraph)));
+    }
+
+    @Test
+    public void edgesAreASetView() {
+        Subgraph subgraph = TestSubgraphs.of(1, 3, 7);
+        Set<LabeledDefaultEdge> edges = subgraph.getEdges();
+        assertEquals(3, edges.size());
+        assertTrue(edges.contains(TestSubgraphs.edge(3)));
+        assertFalse(edges.contains(TestSubgraphs.edge(4)));
+        assertEquals(new HashSet<>(edges), edges);
+
+        subgraph.addEdge(TestSubgraphs.edge(4));
+        assertTrue(edges.contains(TestSubgraphs.edge(4)));
+        assertThrows(UnsupportedOperationException.class, () -> edges.add(TestSubgraphs.edge(5)));
+    }
+
+    @Test
+    public void identifiedById() {
+        Subgraph subgraph = TestSubgraphs.of(1, 3);
+        Subgraph copy = subgraph.copy();
+        assertNotEquals(subgraph, copy);
+
+        int hash = subgraph.hashCode();
+        Set<Subgraph> set = new HashSet<>();
+        set.add(subgraph);
+        subgraph.addAll(TestSubgraphs.of(5, 6));
+        assertEquals(hash, subgraph.hashCode());
+        assertTrue(set.contains(subgraph));
+    }
+}
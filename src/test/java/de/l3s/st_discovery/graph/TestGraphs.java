@@ -0,0 +1,69 @@
+package de.l3s.st_discovery.graph;
+
+import de.l3s.st_discovery.model.regiongrowing.LabeledDefaultEdge;
+import de.l3s.st_discovery.model.regiongrowing.Segment;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.alg.interfaces.ShortestPathAlgorithm;
+import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Street graphs and reference computations shared by the tests
+ */
+public class TestGraphs {
+
+    /**
+     * Builds a random street graph. Node ids are multiples of 3 so they differ from the vertex indices,
+     * segment ids start at 1.
+     */
+    public static CompactGraph random(int vertices, int segments, long seed) {
+        Random random = new Random(seed);
+        List<Segment> result = new ArrayList<>();
+        for (int i = 0; i < segments; ++i) {
+            int source = random.nextInt(vertices);
+            int target = random.nextInt(vertices);
+            if (source == target) continue;
+            result.add(new Segment(i + 1, source * 3, target * 3, 0, 0, null));
+        }
+        return CompactGraph.fromSegments(result);
+    }
+
+    /**
+     * Builds a directed cycle of n vertices
+     */
+    public static CompactGraph cycle(int n) {
+        List<Segment> result = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            result.add(new Segment(i + 1, i, (i + 1) % n, 0, 0, null));
+        }
+        return CompactGraph.fromSegments(result);
+    }
+
+    /**
+     * Computes the edge count distances between all pairs of nodes with Dijkstra like the original region growing
+     * @return Distances by source and target node id, Short.MAX_VALUE if the target is not reachable
+     */
+    public static Map<Integer, Map<Integer, Short>> edgeCountDistances(CompactGraph graph) {
+        Graph<Integer, LabeledDefaultEdge> g = graph.asGraph();
+        DijkstraShortestPath<Integer, LabeledDefaultEdge> dijkstraAlg = new DijkstraShortestPath<>(g);
+
+        Map<Integer, Map<Integer, Short>> distances = new HashMap<>();
+        for (Integer v : g.vertexSet()) {
+            Map<Integer, Short> vertexDistances = new HashMap<>();
+            distances.put(v, vertexDistances);
+
+            ShortestPathAlgorithm.SingleSourcePaths<Integer, LabeledDefaultEdge> paths = dijkstraAlg.getPaths(v);
+            for (Integer u : g.vertexSet()) {
+                GraphPath<Integer, LabeledDefaultEdge> path = paths.getPath(u);
+                vertexDistances.put(u, (short) ((path != null) ? path.getEdgeList().size() : Short.MAX_VALUE));
+            }
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,70 @@
+package de.l3s.st_discovery.graph;
+
+import de.l3s.st_discovery.model.regiongrowing.LabeledDefaultEdge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Subgraphs over edges that only carry an index, for the tests of merging and linking
+ */
+public class TestSubgraphs {
+
+    /**
+     * Returns an edge whose index and label are index
+     */
+    public static LabeledDefaultEdge edge(int index) {
+        LabeledDefaultEdge edge = new LabeledDefaultEdge();
+        edge.index = index;
+        edge.label = index;
+        return edge;
+    }
+
+    public static Subgraph of(int... edges) {
+        Subgraph subgraph = new Subgraph();
+        for (int e : edges) {
+            subgraph.addEdge(edge(e));
+        }
+        return subgraph;
+    }
+
+    /**
+     * Creates overlapping subgraphs: each one draws 3 to 17 edges from a window of 25 edges at a random position
+     * @param count Number of subgraphs
+     * @param edgeCount Number of window positions
+     */
+    public static List<Subgraph> random(int count, int edgeCount, long seed) {
+        Random random = new Random(seed);
+        List<Subgraph> result = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            Subgraph subgraph = new Subgraph();
+            int base = random.nextInt(edgeCount);
+            int size = 3 + random.nextInt(15);
+            for (int k = 0; k < size; ++k) {
+                subgraph.addEdge(edge(base + random.nextInt(25)));
+            }
+            result.add(subgraph);
+        }
+        return result;
+    }
+
+    public static List<Subgraph> copy(List<Subgraph> subgraphs) {
+        List<Subgraph> result = new ArrayList<>();
+        for (Subgraph subgraph : subgraphs) {
+            result.add(subgraph.copy());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the edge indices of a subgraph, e.g. to compare subgraphs independently of their ids
+     */
+    public static String key(Subgraph subgraph) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < subgraph.size(); ++i) {
+            result.append(subgraph.getEdgeIndex(i)).append(',');
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,85 @@
+package de.l3s.st_discovery.model;
+
+import de.l3s.st_discovery.graph.Subgraph;
+import de.l3s.st_discovery.graph.TestSubgraphs;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class MinHashCandidatesTest {
+
+    private static long pair(int lower, int higher) {
+        return (((long) lower) << 32) | higher;
+    }
+
+    @Test
+    public void bandingReachesTargetRecall() {
+        for (double threshold : new double[]{0.2, 0.3, 0.5, 0.8}) {
+            MinHashCandidates minHash = new MinHashCandidates(128, threshold);
+            int rows = minHash.getRows(), bands = minHash.getBands();
+            assertTrue(rows * bands <= 128);
+            assertTrue(MinHashCandidates.detectionProbability(threshold, rows, bands)
+                    >= MinHashCandidates.TARGET_RECALL);
+            //rows is as large as possible
+            assertTrue(MinHashCandidates.detectionProbability(threshold, rows + 1, 128 / (rows + 1))
+                    < MinHashCandidates.TARGET_RECALL);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new MinHashCandidates(0, 0.5));
+    }
+
+    @Test
+    public void findsSimilarPairs() {
+        List<Subgraph> subgraphs = TestSubgraphs.random(2000, 1000, 12);
+        double threshold = 0.5;
+        MinHashCandidates minHash = new MinHashCandidates(128, threshold);
+        minHash.index(subgraphs);
+        long[] candidates = minHash.candidates();
+
+        int sharing = 0, similar = 0, found = 0;
+        for (int i = 0; i < subgraphs.size(); ++i) {
+            for (int j = i + 1; j < subgraphs.size(); ++j) {
+                if (subgraphs.get(i).intersectionSize(subgraphs.get(j)) > 0) ++sharing;
+                if (subgraphs.get(i).jaccard(subgraphs.get(j)) < threshold) continue;
+                ++similar;
+                if (Arrays.binarySearch(candidates, pair(i, j)) >= 0) ++found;
+            }
+        }
+        assertTrue(similar > 100);
+        assertTrue("recall " + found + "/" + similar, found >= MinHashCandidates.TARGET_RECALL * similar);
+        //the exact candidates are all pairs sharing an edge
+        assertTrue(candidates.length < sharing / 2);
+    }
+
+    @Test
+    public void identicalSubgraphsAreAlwaysCandidates() {
+        List<Subgraph> subgraphs = new ArrayList<>();
+        subgraphs.add(TestSubgraphs.of(1, 2, 3, 4));
+        subgraphs.add(null);
+        subgraphs.add(TestSubgraphs.of(100, 101));
+        subgraphs.add(TestSubgraphs.of(1, 2, 3, 4));
+        subgraphs.add(new Subgraph());
+
+        MinHashCandidates minHash = new MinHashCandidates(128, 0.5);
+        minHash.index(subgraphs);
+
+        long[] candidates = minHash.candidates();
+        assertEquals(1, candidates.length);
+        assertEquals(pair(0, 3), candidates[0]);
+    }
+
+    @Test
+    public void mergingMatchesExactCandidates() {
+        //the candidates are random, on this data the banding finds every pair that is merged
+        for (long seed = 1; seed <= 3; ++seed) {
+            List<Subgraph> subgraphs = TestSubgraphs.random(800, 2000, seed);
+            assertEquals(SpatialMergingTest.merge(subgraphs, "--thSim", "0.4"),
+                    SpatialMergingTest.merge(subgraphs, "--thSim", "0.4", "--lshCandidates", "true"));
+        }
+    }
+}
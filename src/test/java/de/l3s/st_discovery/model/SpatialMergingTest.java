@@ -0,0 +1,171 @@
+package de.l3s.st_discovery.model;
+
+import de.l3s.st_discovery.graph.Subgraph;
+import de.l3s.st_discovery.graph.TestSubgraphs;
+import de.l3s.st_discovery.util.configuration.TestConfigurations;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpatialMergingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Similarity of the original merging: Jaccard, or 1 if one subgraph contains the other
+     */
+    static double similarity(Subgraph lhs, Subgraph rhs) {
+        int shared = lhs.intersectionSize(rhs);
+        if (shared == lhs.size() || shared == rhs.size()) {
+            return 1.0;
+        }
+        return ((double) shared) / (lhs.size() + rhs.size() - shared);
+    }
+
+    static List<String> keys(List<Subgraph> subgraphs) {
+        List<String> result = new ArrayList<>();
+        for (Subgraph subgraph : subgraphs) {
+            if (subgraph != null) {
+                result.add(TestSubgraphs.key(subgraph));
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    static List<String> merge(List<Subgraph> subgraphs, String... args) {
+        return keys(new SpatialMerging(TestConfigurations.parse(args))
+                .run(Collections.singletonMap(new Date(0), TestSubgraphs.copy(subgraphs))));
+    }
+
+    /**
+     * The original merging: every round scores all pairs sharing an edge and merges greedily from the
+     * highest score, each subgraph at most once per round. Ties are taken in slot order.
+     */
+    static List<String> mergeInRounds(List<Subgraph> subgraphs, double thSim) {
+        List<Subgraph> slots = TestSubgraphs.copy(subgraphs);
+        boolean changed = true;
+        while (changed) {
+            List<double[]> scores = new ArrayList<>();
+            for (int i = 0; i < slots.size(); ++i) {
+                for (int j = i + 1; j < slots.size(); ++j) {
+                    if (slots.get(i) == null || slots.get(j) == null) continue;
+                    if (slots.get(i).intersectionSize(slots.get(j)) == 0) continue;
+                    double score = similarity(slots.get(i), slots.get(j));
+                    if (score >= thSim) {
+                        scores.add(new double[]{score, i, j});
+                    }
+                }
+            }
+            scores.sort(Comparator.<double[]>comparingDouble(s -> -s[0])
+                    .thenComparingDouble(s -> s[1])
+                    .thenComparingDouble(s -> s[2]));
+
+            boolean[] visited = new boolean[slots.size()];
+            changed = false;
+            for (double[] score : scores) {
+                int i = (int) score[1], j = (int) score[2];
+                if (visited[i] || visited[j]) continue;
+                slots.get(i).addAll(slots.get(j));
+                slots.set(j, null);
+                visited[i] = visited[j] = true;
+                changed = true;
+            }
+        }
+        return keys(slots);
+    }
+
+    /**
+     * Merges the most similar pair first until no pair reaches thSim, ties are taken in slot order
+     */
+    static List<String> mergeBestFirst(List<Subgraph> subgraphs, double thSim) {
+        List<Subgraph> slots = TestSubgraphs.copy(subgraphs);
+        while (true) {
+            double best = -1;
+            int bestI = -1, bestJ = -1;
+            for (int i = 0; i < slots.size(); ++i) {
+                for (int j = i + 1; j < slots.size(); ++j) {
+                    if (slots.get(i) == null || slots.get(j) == null) continue;
+                    if (slots.get(i).intersectionSize(slots.get(j)) == 0) continue;
+                    double score = similarity(slots.get(i), slots.get(j));
+                    if (score >= thSim && score > best) {
+                        best = score;
+                        bestI = i;
+                        bestJ = j;
+                    }
+                }
+            }
+            if (bestI < 0) break;
+            slots.get(bestI).addAll(slots.get(bestJ));
+            slots.set(bestJ, null);
+        }
+        return keys(slots);
+    }
+
+    @Test
+    public void rescoresPairsOfMergedSubgraphs() {
+        //{1, 4} only reaches thSim against the merge of the first two, {4, 5, 6} against no subgraph
+        List<Subgraph> subgraphs = Arrays.asList(TestSubgraphs.of(1, 2, 3), TestSubgraphs.of(2, 3, 4),
+                TestSubgraphs.of(1, 4), TestSubgraphs.of(4, 5, 6));
+        assertEquals(Arrays.asList("1,2,3,4,", "4,5,6,"), merge(subgraphs, "--thSim", "0.5"));
+        assertEquals(mergeInRounds(subgraphs, 0.5), merge(subgraphs, "--thSim", "0.5"));
+    }
+
+    @Test
+    public void mergesChainsAcrossCompactions() {
+        //every round merges neighbours of the chain pairwise and empties half of the remaining slots
+        List<Subgraph> subgraphs = new ArrayList<>();
+        for (int i = 0; i < 64; ++i) {
+            subgraphs.add(TestSubgraphs.of(i, i + 1));
+        }
+        for (double thSim : new double[]{0.1, 0.2}) {
+            List<String> expected = mergeInRounds(subgraphs, thSim);
+            assertTrue(expected.size() < subgraphs.size() / 2);
+            assertEquals("thSim " + thSim, expected, merge(subgraphs, "--thSim", "" + thSim));
+        }
+    }
+
+    @Test
+    public void matchesMergingInRounds() {
+        for (long seed = 1; seed <= 3; ++seed) {
+            List<Subgraph> subgraphs = TestSubgraphs.random(800, 2000, seed);
+            for (double thSim : new double[]{0.2, 0.4, 0.7}) {
+                List<String> expected = mergeInRounds(subgraphs, thSim);
+                assertTrue(expected.size() < subgraphs.size());
+                assertEquals("seed " + seed + " thSim " + thSim, expected, merge(subgraphs, "--thSim", "" + thSim));
+            }
+        }
+    }
+
+    @Test
+    public void dendrogramCutMatchesBestFirstMerging() throws IOException {
+        File file = new File(folder.getRoot(), "dendrogram.bin");
+        List<Subgraph> subgraphs = TestSubgraphs.random(400, 1000, 7);
+
+        //the first run builds the hierarchy, the others cut the stored one
+        for (double thSim : new double[]{0.3, 0.5, 0.35, 0.2, 0.9}) {
+            List<String> expected = mergeBestFirst(subgraphs, thSim);
+            assertEquals("thSim " + thSim, expected, merge(subgraphs, "--thSim", "" + thSim,
+                    "--mergeDendrogram", file.getPath(), "--dendrogramMinSim", "0.2"));
+        }
+        assertEquals(0.2, MergeDendrogram.read(file).getMinSimilarity(), 0);
+
+        //a hierarchy of other subgraphs is rebuilt
+        List<Subgraph> others = TestSubgraphs.random(400, 1000, 8);
+        assertEquals(mergeBestFirst(others, 0.4), merge(others, "--thSim", "0.4",
+                "--mergeDendrogram", file.getPath(), "--dendrogramMinSim", "0.2"));
+    }
+}
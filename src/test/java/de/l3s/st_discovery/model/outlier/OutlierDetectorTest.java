@@ -0,0 +1,155 @@
+package de.l3s.st_discovery.model.outlier;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OutlierDetectorTest {
+
+    private static final int GROUPS = 500;
+
+    private double[] speeds;
+    private int[] groupStarts;
+
+    /**
+     * Creates groups of 1 to 60 speeds with occasional drops, stored back to back
+     */
+    public OutlierDetectorTest() {
+        Random random = new Random(11);
+        List<Double> values = new ArrayList<>();
+        groupStarts = new int[GROUPS + 1];
+        for (int g = 0; g < GROUPS; ++g) {
+            groupStarts[g] = values.size();
+            int n = 1 + random.nextInt(60);
+            double level = 20 + random.nextInt(80);
+            for (int i = 0; i < n; ++i) {
+                double speed = level + random.nextGaussian() * 5;
+                if (random.nextInt(15) == 0) {
+                    speed *= random.nextDouble();
+                }
+                //rounded like speeds in the input table, so groups contain ties
+                values.add((double) Math.round(speed));
+            }
+        }
+        groupStarts[GROUPS] = values.size();
+        speeds = values.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    static double percentileCont(List<Double> values, double q) {
+        List<Double> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        double rank = q * (sorted.size() - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return sorted.get(lower) + (rank - lower) * (sorted.get(upper) - sorted.get(lower));
+    }
+
+    static double median(List<Double> values) {
+        return percentileCont(values, 0.5);
+    }
+
+    static double mad(List<Double> values) {
+        double median = median(values);
+        List<Double> deviations = new ArrayList<>();
+        for (double value : values) {
+            deviations.add(Math.abs(value - median));
+        }
+        return median(deviations);
+    }
+
+    /**
+     * The outlier condition of the original identification query with k = 1.5
+     */
+    static boolean[] tukey(List<Double> group) {
+        double q1 = percentileCont(group, 0.25);
+        double q3 = percentileCont(group, 0.75);
+        boolean[] result = new boolean[group.size()];
+        for (int i = 0; i < group.size(); ++i) {
+            result[i] = group.get(i) < q1 - (1.5 * (q3 - q1));
+        }
+        return result;
+    }
+
+    static boolean[] zScore(List<Double> group) {
+        double mean = group.stream().mapToDouble(Double::doubleValue).average().getAsDouble();
+        double squares = group.stream().mapToDouble(v -> (v - mean) * (v - mean)).sum();
+        double stddev = (group.size() > 1) ? Math.sqrt(squares / (group.size() - 1)) : 0;
+        boolean[] result = new boolean[group.size()];
+        for (int i = 0; i < group.size(); ++i) {
+            result[i] = stddev > 0 && group.get(i) < mean - 2 * stddev;
+        }
+        return result;
+    }
+
+    static boolean[] robustZScore(List<Double> group) {
+        double median = median(group);
+        double mad = mad(group);
+        boolean[] result = new boolean[group.size()];
+        for (int i = 0; i < group.size(); ++i) {
+            result[i] = mad > 0 && (group.get(i) - median) / (1.4826 * mad) < -3.5;
+        }
+        return result;
+    }
+
+    static boolean[] seasonalResidual(List<Double> group) {
+        List<Double> residuals = new ArrayList<>();
+        for (int i = 0; i < group.size(); ++i) {
+            List<Double> window = group.subList(Math.max(0, i - 2), Math.min(group.size(), i + 3));
+            residuals.add(group.get(i) - median(window));
+        }
+        return robustZScore(residuals);
+    }
+
+    private void assertMatches(OutlierDetector detector, Function<List<Double>, boolean[]> reference) {
+        boolean[] outliers = new boolean[speeds.length];
+        int flagged = 0;
+        for (int g = 0; g < GROUPS; ++g) {
+            int from = groupStarts[g], to = groupStarts[g + 1];
+            List<Double> group = new ArrayList<>();
+            for (int i = from; i < to; ++i) {
+                group.add(speeds[i]);
+            }
+            boolean[] expected = reference.apply(group);
+
+            int count = detector.detect(speeds, from, to, outliers);
+            boolean[] actual = new boolean[to - from];
+            System.arraycopy(outliers, from, actual, 0, to - from);
+            assertArrayEquals("group " + g, expected, actual);
+            int expectedCount = 0;
+            for (boolean outlier : expected) {
+                if (outlier) ++expectedCount;
+            }
+            assertEquals(expectedCount, count);
+            flagged += count;
+        }
+        assertTrue(flagged > 0);
+    }
+
+    @Test
+    public void tukeyMatchesIdentificationQuery() {
+        assertMatches(new TukeyDetector(1.5), OutlierDetectorTest::tukey);
+    }
+
+    @Test
+    public void zScoreMatchesSampleStandardDeviation() {
+        assertMatches(new ZScoreDetector(2), OutlierDetectorTest::zScore);
+    }
+
+    @Test
+    public void madMatchesRobustZScore() {
+        assertMatches(new MadDetector(3.5), OutlierDetectorTest::robustZScore);
+    }
+
+    @Test
+    public void seasonalResidualMatchesWindowMedians() {
+        assertMatches(new SeasonalResidualDetector(3.5, 2), OutlierDetectorTest::seasonalResidual);
+    }
+}
@@ -0,0 +1,50 @@
+package de.l3s.st_discovery.model.regiongrowing;
+
+import de.l3s.st_discovery.graph.CompactGraph;
+import de.l3s.st_discovery.graph.TestGraphs;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class NeighborhoodIndexFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripKeepsDistances() throws IOException {
+        CompactGraph graph = TestGraphs.random(300, 900, 2);
+        NeighborhoodIndex index = NeighborhoodIndex.build(graph, 2);
+        File file = new File(folder.getRoot(), "neighborhoods.bin");
+
+        NeighborhoodIndexFile.write(file, index, graph);
+        NeighborhoodIndex mapped = NeighborhoodIndexFile.open(file, graph, 2);
+
+        assertEquals(index.size(), mapped.size());
+        assertEquals(index.getVertexCount(), mapped.getVertexCount());
+        for (int source = 0; source < graph.getVertexCount(); ++source) {
+            assertEquals(index.neighborsStart(source), mapped.neighborsStart(source));
+            assertEquals(index.neighborsEnd(source), mapped.neighborsEnd(source));
+            for (int p = index.neighborsStart(source); p < index.neighborsEnd(source); ++p) {
+                assertEquals(index.neighborAt(p), mapped.neighborAt(p));
+                assertEquals(index.hopsAt(p), mapped.hopsAt(p));
+            }
+        }
+    }
+
+    @Test
+    public void rejectsOtherGraphOrTolerance() throws IOException {
+        CompactGraph graph = TestGraphs.cycle(10);
+        File file = new File(folder.getRoot(), "neighborhoods.bin");
+        NeighborhoodIndexFile.write(file, NeighborhoodIndex.build(graph, 2), graph);
+
+        assertThrows(IOException.class, () -> NeighborhoodIndexFile.open(file, graph, 3));
+        assertThrows(IOException.class, () -> NeighborhoodIndexFile.open(file, TestGraphs.cycle(11), 2));
+    }
+}
@@ -0,0 +1,55 @@
+package de.l3s.st_discovery.model.regiongrowing;
+
+import de.l3s.st_discovery.graph.CompactGraph;
+import de.l3s.st_discovery.graph.TestGraphs;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NeighborhoodIndexTest {
+
+    @Test
+    public void matchesEdgeCountDistances() {
+        CompactGraph graph = TestGraphs.random(300, 900, 1);
+        Map<Integer, Map<Integer, Short>> expected = TestGraphs.edgeCountDistances(graph);
+
+        for (int maxHops = 0; maxHops <= 3; ++maxHops) {
+            NeighborhoodIndex index = NeighborhoodIndex.build(graph, maxHops);
+            long pairs = 0;
+            for (int source = 0; source < graph.getVertexCount(); ++source) {
+                Map<Integer, Short> row = expected.get(graph.getNodeId(source));
+                for (int target = 0; target < graph.getVertexCount(); ++target) {
+                    int distance = row.get(graph.getNodeId(target));
+                    if (distance > maxHops) {
+                        distance = Short.MAX_VALUE;
+                    } else {
+                        ++pairs;
+                    }
+                    assertEquals("distance " + source + "->" + target + " within " + maxHops,
+                            distance, index.distance(source, target));
+                }
+            }
+            assertEquals(pairs, index.size());
+        }
+    }
+
+    @Test
+    public void boundsDistancesOnCycle() {
+        CompactGraph graph = TestGraphs.cycle(10);
+        NeighborhoodIndex index = NeighborhoodIndex.build(graph, 2);
+
+        assertEquals(30, index.size());
+        assertEquals(0, index.distance(0, 0));
+        assertEquals(2, index.distance(0, 2));
+        assertEquals(2, index.distance(8, 0));
+        assertEquals(Short.MAX_VALUE, index.distance(0, 3));
+        assertEquals(Short.MAX_VALUE, index.distance(3, 1));
+        assertEquals(Short.MAX_VALUE, index.distance(-1, 0));
+        assertTrue(index.isWithin(9, 1, 2));
+        assertFalse(index.isWithin(9, 1, 1));
+    }
+}
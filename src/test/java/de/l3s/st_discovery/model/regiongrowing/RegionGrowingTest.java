@@ -0,0 +1,198 @@
+package de.l3s.st_discovery.model.regiongrowing;
+
+import de.l3s.st_discovery.graph.CompactGraph;
+import de.l3s.st_discovery.graph.OutlierStore;
+import de.l3s.st_discovery.graph.Subgraph;
+import de.l3s.st_discovery.graph.TestGraphs;
+import de.l3s.st_discovery.util.configuration.Configuration;
+import de.l3s.st_discovery.util.configuration.TestConfigurations;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RegionGrowingTest {
+
+    /**
+     * Outliers of 40 time points, every second time point repeats the outliers of the previous one
+     */
+    static OutlierStore randomOutliers(CompactGraph graph, int perTimePoint, long seed) {
+        Random random = new Random(seed);
+        OutlierStore.Builder builder = new OutlierStore.Builder();
+        for (int t = 0; t < 20; ++t) {
+            int[] edges = new int[perTimePoint];
+            for (int k = 0; k < perTimePoint; ++k) {
+                edges[k] = random.nextInt(graph.getEdgeCount());
+            }
+            for (int repeat = 0; repeat < 2; ++repeat) {
+                for (int edge : edges) {
+                    builder.add((2 * t + repeat) * 60000L, edge);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the time points from..to-1 of a store
+     */
+    static OutlierStore slice(OutlierStore outliers, int from, int to) {
+        OutlierStore.Builder builder = new OutlierStore.Builder();
+        for (int t = from; t < to; ++t) {
+            builder.add(outliers.getTime(t), -1);
+            for (int edge : outliers.getEdges(t)) {
+                builder.add(outliers.getTime(t), edge);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Clusters outliers by enumerating the existing clusters like the original region growing,
+     * the outliers are processed in ascending edge index order
+     * @return Clusters as sets of edge labels
+     */
+    static Set<Set<Integer>> enumerateClusters(CompactGraph graph, Map<Integer, Map<Integer, Short>> distances,
+                                               int tolerance, int[] edges) {
+        List<Set<LabeledDefaultEdge>> clusters = new ArrayList<>();
+        for (int e : edges) {
+            LabeledDefaultEdge edge = graph.getEdge(e);
+            List<Set<LabeledDefaultEdge>> closeClusters = new ArrayList<>();
+            for (Set<LabeledDefaultEdge> cluster : clusters) {
+                for (LabeledDefaultEdge edge2 : cluster) {
+                    if (distances.get(edge.node_sink).get(edge2.node_source) <= tolerance) {
+                        closeClusters.add(cluster);
+                        break;
+                    }
+                }
+            }
+            Set<LabeledDefaultEdge> cluster = new HashSet<>();
+            cluster.add(edge);
+            for (Set<LabeledDefaultEdge> closeCluster : closeClusters) {
+                cluster.addAll(closeCluster);
+            }
+            clusters.removeAll(closeClusters);
+            clusters.add(cluster);
+        }
+
+        Set<Set<Integer>> result = new HashSet<>();
+        for (Set<LabeledDefaultEdge> cluster : clusters) {
+            if (cluster.size() >= 2) {
+                result.add(labels(cluster));
+            }
+        }
+        return result;
+    }
+
+    static Set<Integer> labels(Iterable<LabeledDefaultEdge> edges) {
+        Set<Integer> result = new HashSet<>();
+        for (LabeledDefaultEdge edge : edges) {
+            result.add(edge.label);
+        }
+        return result;
+    }
+
+    static Set<Set<Integer>> labels(List<Subgraph> subgraphs) {
+        Set<Set<Integer>> result = new HashSet<>();
+        for (Subgraph subgraph : subgraphs) {
+            result.add(labels(subgraph));
+        }
+        return result;
+    }
+
+    @Test
+    public void matchesClusterEnumeration() {
+        CompactGraph graph = TestGraphs.random(300, 900, 3);
+        Map<Integer, Map<Integer, Short>> distances = TestGraphs.edgeCountDistances(graph);
+        OutlierStore outliers = randomOutliers(graph, 120, 4);
+
+        for (int dskip = 0; dskip <= 3; ++dskip) {
+            Configuration config = TestConfigurations.parse("--subgraphName", "test", "--dSkip", "" + dskip);
+            Map<Date, List<Subgraph>> regions = new RegionGrowing(config, graph, outliers).run();
+
+            assertEquals(outliers.size(), regions.size());
+            int clusters = 0;
+            for (int t = 0; t < outliers.size(); ++t) {
+                Set<Set<Integer>> expected = enumerateClusters(graph, distances, dskip, outliers.getEdges(t));
+                assertEquals("dSkip " + dskip + " time point " + t,
+                        expected, labels(regions.get(new Date(outliers.getTime(t)))));
+                clusters += expected.size();
+            }
+            assertTrue(clusters > 0);
+        }
+    }
+
+    @Test
+    public void memoizedRegionsMatchFreshRuns() {
+        CompactGraph graph = TestGraphs.random(300, 900, 7);
+        OutlierStore outliers = randomOutliers(graph, 80, 8);
+
+        Map<Date, List<Subgraph>> fresh = new RegionGrowing(TestConfigurations.parse(
+                "--subgraphName", "test", "--dSkip", "2", "--memoizeRegions", "false"), graph, outliers).run();
+        Map<Date, List<Subgraph>> memoized = new RegionGrowing(TestConfigurations.parse(
+                "--subgraphName", "test", "--dSkip", "2", "--regionCacheSize", "4"), graph, outliers).run();
+
+        assertEquals(fresh.keySet(), memoized.keySet());
+        Set<Integer> ids = new HashSet<>();
+        int regions = 0;
+        for (Date time : fresh.keySet()) {
+            assertEquals("time " + time, labels(fresh.get(time)), labels(memoized.get(time)));
+            for (Subgraph region : memoized.get(time)) {
+                ids.add(region.getId());
+                ++regions;
+            }
+        }
+        //time points with repeated outliers get their own subgraphs
+        assertTrue(regions > 0);
+        assertEquals(regions, ids.size());
+    }
+
+    @Test
+    public void batchesMatchSingleRun() {
+        CompactGraph graph = TestGraphs.random(300, 900, 5);
+        OutlierStore outliers = randomOutliers(graph, 60, 6);
+        Configuration config = TestConfigurations.parse("--subgraphName", "test", "--dSkip", "2");
+        Map<Date, List<Subgraph>> expected = new RegionGrowing(config, graph, outliers).run();
+
+        //one instance processes the batches as they arrive
+        RegionGrowing regionGrowing = new RegionGrowing(config, graph, slice(outliers, 0, 0));
+        Map<Date, List<Subgraph>> regions = new TreeMap<>();
+        regions.putAll(regionGrowing.process(slice(outliers, 0, 15)));
+        regions.putAll(regionGrowing.process(slice(outliers, 15, 31)));
+        regions.putAll(regionGrowing.process(slice(outliers, 31, outliers.size())));
+
+        assertEquals(expected.keySet(), regions.keySet());
+        for (Date time : expected.keySet()) {
+            assertEquals("at " + time, labels(expected.get(time)), labels(regions.get(time)));
+        }
+    }
+
+    @Test
+    public void levelsMatchSingleRuns() {
+        CompactGraph graph = TestGraphs.random(400, 900, 5);
+        OutlierStore outliers = randomOutliers(graph, 60, 6);
+
+        Map<Integer, Map<Date, List<Subgraph>>> levels = new RegionGrowing(TestConfigurations.parse(
+                "--subgraphName", "test", "--dSkip", "2", "--dSkipLevels", "0;1;3;4"), graph, outliers).runLevels();
+
+        assertEquals(5, levels.size());
+        for (int dskip = 0; dskip <= 4; ++dskip) {
+            Configuration config = TestConfigurations.parse("--subgraphName", "test", "--dSkip", "" + dskip);
+            Map<Date, List<Subgraph>> regions = new RegionGrowing(config, graph, outliers).run();
+            assertEquals(regions.keySet(), levels.get(dskip).keySet());
+            for (Date time : regions.keySet()) {
+                assertEquals("dSkip " + dskip + " at " + time,
+                        labels(regions.get(time)), labels(levels.get(dskip).get(time)));
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package de.l3s.st_discovery.model.regiongrowing;
+
+import de.l3s.st_discovery.graph.Subgraph;
+import de.l3s.st_discovery.graph.TestSubgraphs;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpatioTemporalLinkerTest {
+
+    private static final long MINUTE = 60000L;
+
+    /**
+     * Regions of 60 time points, some of them missing. Regions of one time point are disjoint.
+     */
+    static TreeMap<Date, List<Subgraph>> randomRegions(long seed) {
+        Random random = new Random(seed);
+        TreeMap<Date, List<Subgraph>> result = new TreeMap<>();
+        for (int t = 0; t < 60; ++t) {
+            List<Subgraph> regions = new ArrayList<>();
+            int count = random.nextInt(4);
+            for (int k = 0; k < count; ++k) {
+                Subgraph region = new Subgraph();
+                int base = k * 50 + random.nextInt(40);
+                for (int e = 0; e < 4; ++e) {
+                    region.addEdge(TestSubgraphs.edge(base + random.nextInt(6)));
+                }
+                regions.add(region);
+            }
+            if (random.nextInt(5) > 0) {
+                result.put(new Date(t * MINUTE), regions);
+            }
+        }
+        return result;
+    }
+
+    static TreeMap<Date, List<Subgraph>> copy(SortedMap<Date, List<Subgraph>> regions) {
+        TreeMap<Date, List<Subgraph>> result = new TreeMap<>();
+        for (Map.Entry<Date, List<Subgraph>> entry : regions.entrySet()) {
+            result.put(entry.getKey(), TestSubgraphs.copy(entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the linked regions as start time and edge indices
+     */
+    static List<String> reports(Map<Date, List<Subgraph>> linked) {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<Date, List<Subgraph>> entry : new TreeMap<>(linked).entrySet()) {
+            for (Subgraph region : entry.getValue()) {
+                result.add(entry.getKey().getTime() + ":" + TestSubgraphs.key(region));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void linksRegionsWithinGap() {
+        TreeMap<Date, List<Subgraph>> regions = new TreeMap<>();
+        regions.put(new Date(0), new ArrayList<>(Arrays.asList(TestSubgraphs.of(1, 2), TestSubgraphs.of(10, 11))));
+        regions.put(new Date(MINUTE), new ArrayList<>(Arrays.asList(TestSubgraphs.of(2, 3), TestSubgraphs.of(20, 21))));
+        //{10, 11} was last extended two minutes ago and is not continued
+        regions.put(new Date(2 * MINUTE), new ArrayList<>(Arrays.asList(TestSubgraphs.of(3, 11))));
+        regions.put(new Date(10 * MINUTE), new ArrayList<>(Arrays.asList(TestSubgraphs.of(1, 2))));
+
+        List<String> linked = reports(new SpatioTemporalLinker(MINUTE).link(regions));
+
+        assertEquals(new TreeSet<>(Arrays.asList("0:1,2,3,11,", "0:10,11,", "60000:20,21,", "600000:1,2,")),
+                new TreeSet<>(linked));
+    }
+
+    @Test
+    public void batchesMatchSingleCall() {
+        for (long seed = 1; seed <= 50; ++seed) {
+            TreeMap<Date, List<Subgraph>> regions = randomRegions(seed);
+            Set<String> expected = new TreeSet<>(reports(new SpatioTemporalLinker(3 * MINUTE).link(copy(regions))));
+
+            SpatioTemporalLinker linker = new SpatioTemporalLinker(3 * MINUTE);
+            TreeMap<Date, List<Subgraph>> batches = copy(regions);
+            List<String> reported = new ArrayList<>();
+            reported.addAll(reports(linker.link(new TreeMap<>(batches.headMap(new Date(20 * MINUTE))))));
+            reported.addAll(reports(linker.link(new TreeMap<>(batches.subMap(new Date(20 * MINUTE), new Date(41 * MINUTE))))));
+            reported.addAll(reports(linker.link(new TreeMap<>(batches.tailMap(new Date(41 * MINUTE))))));
+
+            //a region continued by a later batch is reported again with the same start and more edges
+            Set<String> actual = new TreeSet<>();
+            for (int i = 0; i < reported.size(); ++i) {
+                if (!isContinuedLater(reported, i)) {
+                    actual.add(reported.get(i));
+                }
+            }
+            assertTrue(expected.size() > 10);
+            assertEquals("seed " + seed, expected, actual);
+        }
+    }
+
+    private static boolean isContinuedLater(List<String> reported, int i) {
+        String[] report = reported.get(i).split(":");
+        Set<String> edges = new TreeSet<>(Arrays.asList(report[1].split(",")));
+        for (int j = i + 1; j < reported.size(); ++j) {
+            String[] later = reported.get(j).split(":");
+            if (later[0].equals(report[0]) && !reported.get(j).equals(reported.get(i))
+                    && new TreeSet<>(Arrays.asList(later[1].split(","))).containsAll(edges)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,46 @@
+package de.l3s.st_discovery.output;
+
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OutlierWriterTest {
+
+    static String copyText(OutlierWriter.Rows rows, int speedType) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < rows.size(); ++i) {
+            OutlierWriter.appendRow(result, rows, i, OutlierWriter.isIntegral(speedType));
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void writesIntegerSpeedColumns() {
+        OutlierWriter.Rows rows = new OutlierWriter.Rows();
+        rows.add(17, Timestamp.valueOf("2019-03-04 08:15:00"), 42.0);
+        rows.add(3000000000L, Timestamp.valueOf("2019-03-04 08:30:00"), 7.0);
+
+        String expected = "17\t2019-03-04 08:15:00.0\t42\n" +
+                "3000000000\t2019-03-04 08:30:00.0\t7\n";
+        assertEquals(expected, copyText(rows, Types.INTEGER));
+        assertEquals(expected, copyText(rows, Types.SMALLINT));
+        assertEquals(expected, copyText(rows, Types.BIGINT));
+    }
+
+    @Test
+    public void keepsFractionsOfOtherSpeedColumns() {
+        OutlierWriter.Rows rows = new OutlierWriter.Rows();
+        rows.add(17, Timestamp.valueOf("2019-03-04 08:15:00"), 42.5);
+
+        assertFalse(OutlierWriter.isIntegral(Types.DOUBLE));
+        assertFalse(OutlierWriter.isIntegral(Types.NUMERIC));
+        assertTrue(OutlierWriter.isIntegral(Types.INTEGER));
+        assertEquals("17\t2019-03-04 08:15:00.0\t42.5\n", copyText(rows, Types.DOUBLE));
+        assertEquals("17\t2019-03-04 08:15:00.0\t42.5\n", copyText(rows, Types.REAL));
+    }
+}
@@ -0,0 +1,107 @@
+package de.l3s.st_discovery.source;
+
+import de.l3s.st_discovery.graph.CompactGraph;
+import de.l3s.st_discovery.graph.OutlierStore;
+import de.l3s.st_discovery.model.regiongrowing.Segment;
+import de.l3s.st_discovery.output.OutlierWriter;
+import de.l3s.st_discovery.util.configuration.Configuration;
+import de.l3s.st_discovery.util.configuration.TestConfigurations;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static de.l3s.st_discovery.source.FileTrafficDataSourceTest.writeLines;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class FileGraphSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration config;
+
+    @Before
+    public void setUp() {
+        config = TestConfigurations.parse("--dataSource", "file", "--dataDirectory", folder.getRoot().getPath());
+    }
+
+    private File writeGraph(String... lines) throws IOException {
+        File csv = new File(folder.getRoot(), FileGraphSource.GRAPH_CSV);
+        writeLines(csv, lines);
+        return csv;
+    }
+
+    @Test
+    public void importsGraphCsvIntoSnapshot() throws IOException {
+        File csv = writeGraph("id,source,target,geometry",
+                "11,1,2,LINESTRING (9.73 52.37, 9.74 52.37)",
+                "12,2,3,LINESTRING (9.74 52.37, 9.74 52.38)",
+                "13,3,1,LINESTRING (9.74 52.38, 9.73 52.37)");
+
+        CompactGraph graph = new FileGraphSource(config).fetchGraph();
+        assertTrue(new File(folder.getRoot(), FileGraphSource.GRAPH_FILE).exists());
+        assertEquals(3, graph.getVertexCount());
+        assertEquals(3, graph.getEdgeCount());
+        assertEquals(1, graph.getNodeId(graph.getEdgeSource(graph.edgeIndexOf(11))));
+        assertEquals(1, graph.getNodeId(graph.getEdgeTarget(graph.edgeIndexOf(13))));
+
+        //later runs read the snapshot until the csv file changes
+        assertEquals(graph.fingerprint(), new FileGraphSource(config).fetchGraph().fingerprint());
+        writeGraph("11,1,2,LINESTRING (9.73 52.37, 9.74 52.37)");
+        assertTrue(csv.setLastModified(System.currentTimeMillis() + 60000));
+        assertEquals(1, new FileGraphSource(config).fetchGraph().getEdgeCount());
+    }
+
+    @Test
+    public void readsOutliersOfTheTrafficSource() throws IOException {
+        CompactGraph graph = CompactGraph.fromSegments(Arrays.asList(
+                new Segment(11, 1, 2, -1, -1, null),
+                new Segment(12, 2, 3, -1, -1, null)));
+
+        OutlierWriter.Rows rows = new OutlierWriter.Rows();
+        rows.add(12, Timestamp.valueOf("2019-03-04 08:30:00"), 4);
+        rows.add(11, Timestamp.valueOf("2019-03-04 08:15:00"), 3);
+        rows.add(12, Timestamp.valueOf("2019-03-04 08:15:00"), 5);
+        //not part of the graph, only registers its time point
+        rows.add(99, Timestamp.valueOf("2019-03-04 08:45:00"), 1);
+        new FileTrafficDataSource(config).writeOutliers(rows);
+
+        OutlierStore outliers = new FileGraphSource(config).fetchOutliers(graph);
+        assertEquals(3, outliers.size());
+        assertEquals(Timestamp.valueOf("2019-03-04 08:15:00").getTime(), outliers.getTime(0));
+        assertArrayEquals(new int[]{graph.edgeIndexOf(11), graph.edgeIndexOf(12)}, outliers.getEdges(0));
+        assertArrayEquals(new int[]{graph.edgeIndexOf(12)}, outliers.getEdges(1));
+        assertEquals(Timestamp.valueOf("2019-03-04 08:45:00").getTime(), outliers.getTime(2));
+        assertArrayEquals(new int[0], outliers.getEdges(2));
+    }
+
+    @Test
+    public void importsOutliersCsv() throws IOException {
+        CompactGraph graph = CompactGraph.fromSegments(Collections.singletonList(new Segment(11, 1, 2, -1, -1, null)));
+        writeLines(new File(folder.getRoot(), FileGraphSource.OUTLIER_CSV), "id,time",
+                "11,2019-03-04 08:30:00", "11,2019-03-04 08:15:00", "11,2019-03-04 08:15:00");
+
+        OutlierStore outliers = new FileGraphSource(config).fetchOutliers(graph);
+        assertTrue(new File(folder.getRoot(), FileTrafficDataSource.OUTLIER_FILE).exists());
+        assertEquals(2, outliers.size());
+        assertEquals(Timestamp.valueOf("2019-03-04 08:15:00").getTime(), outliers.getTime(0));
+        assertEquals(2, outliers.getOutlierCount());
+    }
+
+    @Test
+    public void requiresGraphFiles() {
+        assertThrows(IOException.class, () -> new FileGraphSource(config).fetchGraph());
+        assertThrows(IOException.class, () -> new FileGraphSource(config).fetchOutliers(
+                CompactGraph.fromSegments(Collections.emptyList())));
+    }
+}
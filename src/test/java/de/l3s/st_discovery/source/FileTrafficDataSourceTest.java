@@ -0,0 +1,94 @@
+package de.l3s.st_discovery.source;
+
+import de.l3s.st_discovery.model.outlier.SpeedHistory;
+import de.l3s.st_discovery.output.OutlierWriter;
+import de.l3s.st_discovery.util.configuration.TestConfigurations;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class FileTrafficDataSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static void writeLines(File file, String... lines) throws IOException {
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Flags speeds below 10
+     */
+    static Set<String> slowRecords(SpeedHistory history) {
+        OutlierWriter.Rows rows = history.score(() -> (speeds, from, to, outliers) -> {
+            int count = 0;
+            for (int i = from; i < to; ++i) {
+                outliers[i] = speeds[i] < 10;
+                count += outliers[i] ? 1 : 0;
+            }
+            return count;
+        });
+        Set<String> result = new TreeSet<>();
+        for (int i = 0; i < rows.size(); ++i) {
+            result.add(rows.getId(i) + " " + rows.getTime(i) + " " + rows.getSpeed(i));
+        }
+        return result;
+    }
+
+    @Test
+    public void importsTrafficCsv() throws IOException {
+        File csv = folder.newFile(FileTrafficDataSource.TRAFFIC_CSV);
+        //two Mondays and a Tuesday at 08:15, records out of time order and one without speed
+        writeLines(csv, "id,time,speed",
+                "7,2019-03-11 08:15:00,8.5",
+                "7,2019-03-04 08:15:00,42",
+                "9,2019-03-04 08:15:00,",
+                "9,2019-03-04 08:15:00.5,5",
+                "7,2019-03-05 08:15:00,3");
+
+        FileTrafficDataSource source = new FileTrafficDataSource(TestConfigurations.parse(
+                "--dataSource", "file", "--dataDirectory", folder.getRoot().getPath()));
+        SpeedHistory history = source.loadHistory();
+        assertTrue(new File(folder.getRoot(), FileTrafficDataSource.TRAFFIC_FILE).exists());
+        assertEquals(4, history.getRecordCount());
+        assertEquals(3, history.getGroupCount());
+        assertEquals(new TreeSet<>(Arrays.asList("7 2019-03-11 08:15:00.0 8.5", "7 2019-03-05 08:15:00.0 3.0",
+                "9 2019-03-04 08:15:00.5 5.0")), slowRecords(history));
+
+        //the imported file is used until the csv file changes
+        assertEquals(4, source.loadHistory().getRecordCount());
+        writeLines(csv, "7,2019-03-04 08:15:00,4");
+        assertTrue(csv.setLastModified(System.currentTimeMillis() + 60000));
+        history = source.loadHistory();
+        assertEquals(1, history.getRecordCount());
+        assertEquals(Collections.singleton("7 2019-03-04 08:15:00.0 4.0"), slowRecords(history));
+    }
+
+    @Test
+    public void rejectsMalformedLines() throws IOException {
+        writeLines(folder.newFile(FileTrafficDataSource.TRAFFIC_CSV), "7,2019-03-04 08:15:00,42", "8,2019-03-04");
+        FileTrafficDataSource source = new FileTrafficDataSource(TestConfigurations.parse(
+                "--dataSource", "file", "--dataDirectory", folder.getRoot().getPath()));
+        assertThrows(IOException.class, source::loadHistory);
+    }
+
+    @Test
+    public void requiresTrafficFiles() {
+        FileTrafficDataSource source = new FileTrafficDataSource(TestConfigurations.parse(
+                "--dataSource", "file", "--dataDirectory", folder.getRoot().getPath()));
+        assertThrows(IOException.class, source::loadHistory);
+    }
+}
@@ -0,0 +1,37 @@
+package de.l3s.st_discovery.util.configuration;
+
+import de.l3s.st_discovery.graph.GraphFetcher;
+import de.l3s.st_discovery.model.DependencyCalculator;
+import de.l3s.st_discovery.model.OutlierIdentifier;
+import de.l3s.st_discovery.model.SpatialMerging;
+import de.l3s.st_discovery.model.StreamingOutlierIdentifier;
+import de.l3s.st_discovery.model.outlier.HistoryOutlierIdentifier;
+import de.l3s.st_discovery.model.regiongrowing.RegionGrowing;
+import de.l3s.st_discovery.source.DataSources;
+import de.l3s.st_discovery.util.db.PostgreDB;
+
+/**
+ * Builds configurations from command line arguments with the options of the application
+ */
+public class TestConfigurations {
+
+    /**
+     * Parses args, which must not contain multiple values for an option
+     */
+    public static Configuration parse(String... args) {
+        ConfigurationParser confParse = new ConfigurationParser();
+
+        PostgreDB.addConfigEntriesWitMaxCons(confParse);
+        DataSources.registerConfigEntries(confParse);
+        OutlierIdentifier.registerConfigEntries(confParse);
+        StreamingOutlierIdentifier.registerConfigEntries(confParse);
+        HistoryOutlierIdentifier.registerConfigEntries(confParse);
+        GraphFetcher.registerConfigEntries(confParse);
+        RegionGrowing.registerConfigEntries(confParse);
+        SpatialMerging.registerConfigEntries(confParse);
+        DependencyCalculator.registerConfigEntries(confParse);
+
+        confParse.parse(args);
+        return confParse.getConfigs().get(0);
+    }
+}
@@ -0,0 +1,48 @@
+package de.l3s.st_discovery.util.db;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionedLoaderTest {
+
+    @Test
+    public void rangesCoverBoundsWithoutGaps() {
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; ++i) {
+            long min = random.nextInt(2000000) - 1000000;
+            long max = min + random.nextInt((i % 2 == 0) ? 50 : 5000000);
+            int partitions = 1 + random.nextInt(40);
+            long[] bounds = PartitionedLoader.split(min, max, partitions);
+
+            String range = "[" + min + ", " + max + "] in " + partitions;
+            assertEquals(range, min, bounds[0]);
+            assertEquals(range, max + 1, bounds[bounds.length - 1]);
+            assertTrue(range, bounds.length - 1 <= partitions);
+
+            //equal widths, only the last range may be shorter
+            long width = bounds[1] - bounds[0];
+            assertEquals(range, (max - min + partitions) / partitions, width);
+            for (int r = 0; r + 1 < bounds.length; ++r) {
+                assertTrue(range, bounds[r] < bounds[r + 1]);
+                if (r + 2 < bounds.length) {
+                    assertEquals(range, width, bounds[r + 1] - bounds[r]);
+                } else {
+                    assertTrue(range, bounds[r + 1] - bounds[r] <= width);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void smallRanges() {
+        assertArrayEquals(new long[]{5, 6}, PartitionedLoader.split(5, 5, 16));
+        assertArrayEquals(new long[]{0, 1, 2, 3}, PartitionedLoader.split(0, 2, 16));
+        assertArrayEquals(new long[]{-4, 6}, PartitionedLoader.split(-4, 5, 1));
+        assertArrayEquals(new long[]{0, 3, 6, 9, 10}, PartitionedLoader.split(0, 9, 4));
+    }
+}
@@ -0,0 +1,80 @@
+package de.l3s.st_discovery.util.geography;
+
+import de.l3s.st_discovery.model.regiongrowing.LabeledDefaultEdge;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ProjectionServiceTest {
+
+    private static final GeometryFactory FACTORY = new GeometryFactory();
+
+    /**
+     * Creates edges with short streets spread over about 20 x 20 km
+     */
+    static List<LabeledDefaultEdge> edges(int count, long seed) {
+        Random random = new Random(seed);
+        List<LabeledDefaultEdge> result = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            Coordinate start = new Coordinate(9.6 + random.nextDouble() * 0.3, 52.3 + random.nextDouble() * 0.2);
+            LabeledDefaultEdge edge = new LabeledDefaultEdge();
+            edge.index = i;
+            edge.setGeometry(FACTORY.createLineString(new Coordinate[]{start,
+                    new Coordinate(start.x + 0.002, start.y - 0.001)}));
+            result.add(edge);
+        }
+        return result;
+    }
+
+    @Test
+    public void laterEdgesShareTheProjection() throws Exception {
+        List<LabeledDefaultEdge> edges = edges(20, 1);
+        List<LabeledDefaultEdge> first = edges.subList(0, 10);
+        ProjectionService projection = ProjectionService.project(first);
+        assertNotNull(projection);
+        List<Geometry> projected = new ArrayList<>();
+        for (LabeledDefaultEdge edge : first) {
+            assertSame(projection, edge.getProjection());
+            projected.add(edge.getProjectedGeometry());
+        }
+
+        //the projected edges keep their geometries, the others are projected like them
+        LabeledDefaultEdge withoutGeometry = new LabeledDefaultEdge();
+        List<LabeledDefaultEdge> all = new ArrayList<>(edges);
+        all.add(withoutGeometry);
+        assertSame(projection, ProjectionService.project(all));
+        for (int i = 0; i < edges.size(); ++i) {
+            assertSame(projection, edges.get(i).getProjection());
+            if (i < first.size()) {
+                assertSame(projected.get(i), edges.get(i).getProjectedGeometry());
+            }
+        }
+        assertNull(withoutGeometry.getProjection());
+        assertNull(ProjectionService.project(Collections.singletonList(withoutGeometry)));
+    }
+
+    @Test
+    public void projectedDistancesMatchMeasures() throws Exception {
+        List<LabeledDefaultEdge> edges = edges(40, 2);
+        ProjectionService.project(edges);
+
+        for (int i = 0; i < edges.size(); ++i) {
+            for (int j = i + 1; j < edges.size(); ++j) {
+                double expected = Measures.distance(edges.get(i).getGeometry(), edges.get(j).getGeometry());
+                assertEquals("pair " + i + "," + j, expected, edges.get(i).distance(edges.get(j)),
+                        1e-4 * expected + 0.01);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package de.l3s.st_discovery.util.information;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0.0, 0.1, 0.25, 0.5, 0.75, 0.9, 1.0};
+
+    /**
+     * Exact quantile like percentile_cont of the database engine
+     */
+    static double percentileCont(float[] sorted, double q) {
+        double rank = q * (sorted.length - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return sorted[lower] + (rank - lower) * ((double) sorted[upper] - sorted[lower]);
+    }
+
+    /**
+     * Returns the fraction of values below value
+     */
+    static double rank(float[] sorted, double value) {
+        int low = 0, high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return (double) low / sorted.length;
+    }
+
+    static float[] gaussian(int n, long seed) {
+        Random random = new Random(seed);
+        float[] values = new float[n];
+        for (int i = 0; i < n; ++i) {
+            values[i] = (float) (random.nextGaussian() * 10 - 3);
+        }
+        return values;
+    }
+
+    @Test
+    public void exactBeforeCompaction() {
+        for (int n : new int[]{1, 2, 5, 52, 199}) {
+            float[] values = gaussian(n, n);
+            QuantileSketch sketch = new QuantileSketch(200);
+            for (float value : values) {
+                sketch.update(value);
+            }
+            float[] sorted = values.clone();
+            Arrays.sort(sorted);
+            for (double q : QUANTILES) {
+                assertEquals("n=" + n + " q=" + q, percentileCont(sorted, q), sketch.quantile(q), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void rankErrorWithinBound() {
+        float[] values = gaussian(200000, 7);
+        QuantileSketch sketch = new QuantileSketch(200);
+        QuantileSketch even = new QuantileSketch(200), odd = new QuantileSketch(200);
+        for (int i = 0; i < values.length; ++i) {
+            sketch.update(values[i]);
+            (i % 2 == 0 ? even : odd).update(values[i]);
+        }
+        even.merge(odd);
+        assertEquals(values.length, sketch.getCount());
+        assertEquals(values.length, even.getCount());
+
+        float[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double q : new double[]{0.1, 0.25, 0.5, 0.75, 0.9}) {
+            assertTrue("q=" + q, Math.abs(rank(sorted, sketch.quantile(q)) - q) < 0.02);
+            assertTrue("merged q=" + q, Math.abs(rank(sorted, even.quantile(q)) - q) < 0.02);
+        }
+    }
+
+    @Test
+    public void serializationRoundTrip() {
+        Random random = new Random(3);
+        for (int n : new int[]{0, 1, 50, 5000}) {
+            QuantileSketch sketch = new QuantileSketch(100);
+            for (int i = 0; i < n; ++i) {
+                sketch.update((float) random.nextGaussian());
+            }
+            QuantileSketch copy = QuantileSketch.fromBytes(sketch.toBytes());
+            assertEquals(sketch.getCount(), copy.getCount());
+            for (double q : QUANTILES) {
+                assertEquals(sketch.quantile(q), copy.quantile(q), 0);
+            }
+
+            //compaction is deterministic, so both continue identically
+            for (int i = 0; i < n; ++i) {
+                float value = (float) random.nextGaussian();
+                sketch.update(value);
+                copy.update(value);
+            }
+            for (double q : QUANTILES) {
+                assertEquals(sketch.quantile(q), copy.quantile(q), 0);
+            }
+        }
+    }
+
+    @Test
+    public void emptySketchHasNoQuantile() {
+        assertTrue(Double.isNaN(new QuantileSketch(200).quantile(0.5)));
+    }
+}
@@ -0,0 +1,41 @@
+package de.l3s.st_discovery.util.misc;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+public class ArtifactCacheTest {
+
+    @Test
+    public void sharesResultsOfEqualInputs() throws SQLException, IOException {
+        ArtifactCache cache = new ArtifactCache();
+        AtomicInteger computed = new AtomicInteger();
+
+        Object first = cache.get("regions", Arrays.asList("graph", 2, 0.5), () -> new int[]{computed.incrementAndGet()});
+        Object second = cache.get("regions", Arrays.asList("graph", 2, 0.5), () -> new int[]{computed.incrementAndGet()});
+        assertSame(first, second);
+        assertEquals(1, computed.get());
+
+        cache.get("regions", Arrays.asList("graph", 3, 0.5), () -> new int[]{computed.incrementAndGet()});
+        cache.get("neighborhoods", Arrays.asList("graph", 2, 0.5), () -> new int[]{computed.incrementAndGet()});
+        cache.get("regions", Collections.singletonList("graph"), () -> new int[]{computed.incrementAndGet()});
+        assertEquals(4, computed.get());
+    }
+
+    @Test
+    public void failedStagesAreComputedAgain() throws SQLException, IOException {
+        ArtifactCache cache = new ArtifactCache();
+        assertThrows(SQLException.class, () -> cache.get("outliers", Collections.singletonList("table"), () -> {
+            throw new SQLException("connection lost");
+        }));
+        assertEquals("loaded", cache.get("outliers", Collections.singletonList("table"), () -> "loaded"));
+    }
+}